@@ -31,6 +31,11 @@ dependencies {
     implementation("org.springdoc:springdoc-openapi-starter-webflux-ui:2.8.5")
     implementation("org.springframework.boot:spring-boot-starter-data-redis-reactive")
     implementation("org.springframework.boot:spring-boot-starter-cache")
+    implementation("org.springframework.session:spring-session-data-redis")
+    implementation("com.github.ben-manes.caffeine:caffeine")
+    implementation("com.fasterxml.jackson.dataformat:jackson-dataformat-smile")
+    implementation("org.lz4:lz4-java:1.8.0")
+    implementation("com.github.luben:zstd-jni:1.5.6-3")
 
     runtimeOnly("org.postgresql:postgresql:42.7.2")
     compileOnly("org.projectlombok:lombok")
@@ -43,6 +48,9 @@ dependencies {
     testImplementation("org.testcontainers:r2dbc")
     testImplementation("com.github.codemonstur:embedded-redis:1.4.3")
     testImplementation("com.redis:testcontainers-redis:2.2.2")
+    testImplementation("org.openjdk.jmh:jmh-core:1.37")
+    testAnnotationProcessor("org.openjdk.jmh:jmh-generator-annprocess:1.37")
+    testImplementation("io.projectreactor.tools:blockhound:1.0.11.RELEASE")
 
     testRuntimeOnly("org.junit.platform:junit-platform-launcher")
     testCompileOnly("org.projectlombok:lombok")
@@ -77,3 +85,35 @@ tasks.compileJava {
 tasks.withType<Test> {
     useJUnitPlatform()
 }
+
+tasks.test {
+    useJUnitPlatform {
+        excludeTags("benchmark", "blockhound")
+    }
+}
+
+tasks.register<Test>("blockhound") {
+    description = "Checks that cache access does not block reactive threads."
+    group = "verification"
+    testClassesDirs = sourceSets["test"].output.classesDirs
+    classpath = sourceSets["test"].runtimeClasspath
+    useJUnitPlatform {
+        includeTags("blockhound")
+    }
+    jvmArgs("-XX:+AllowRedefinitionToAddDeleteMethods")
+}
+
+tasks.check {
+    dependsOn("blockhound")
+}
+
+tasks.register<Test>("benchmark") {
+    description = "Runs benchmark tests against a seeded database."
+    group = "verification"
+    testClassesDirs = sourceSets["test"].output.classesDirs
+    classpath = sourceSets["test"].runtimeClasspath
+    useJUnitPlatform {
+        includeTags("benchmark")
+    }
+    testLogging.showStandardStreams = true
+}
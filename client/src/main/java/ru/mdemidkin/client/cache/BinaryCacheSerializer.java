@@ -0,0 +1,195 @@
+package ru.mdemidkin.client.cache;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Бинарный сериализатор значений Redis.
+ * <p>
+ * Схема значения берется из его класса, а в Redis пишется только короткий заголовок:
+ * <pre>
+ * magic(1) | сжатие(1) | форма(1) | id типа(2) | [время обновления(8)] | [исходная длина(4)] | тело Smile
+ * </pre>
+ * Для списков (результаты {@code Flux}) в заголовке хранится тип элемента.
+ * Для {@link CacheEnvelope} в заголовок пишется время обновления, а тело содержит само значение.
+ * Тело длиннее порога сжимается. Типы, не зарегистрированные в {@link CacheTypeRegistry},
+ * и значения, записанные до включения формата, обрабатываются резервным сериализатором
+ */
+public class BinaryCacheSerializer implements RedisSerializer<Object> {
+
+    /**
+     * Не может быть первым байтом JSON, поэтому старые значения отличаются от новых по первому байту
+     */
+    static final byte MAGIC = (byte) 0xB1;
+
+    private static final byte SHAPE_VALUE = 0;
+    private static final byte SHAPE_LIST = 1;
+    private static final byte ENVELOPE_FLAG = 0x10;
+    private static final int EMPTY_LIST_TYPE = 0;
+    private static final int HEADER_LENGTH = 5;
+
+    private final ObjectMapper mapper;
+    private final CacheTypeRegistry registry;
+    private final RedisSerializer<Object> fallback;
+    private final CacheCompression compression;
+    private final int compressionThreshold;
+
+    public BinaryCacheSerializer(ObjectMapper mapper,
+                                 CacheTypeRegistry registry,
+                                 RedisSerializer<Object> fallback,
+                                 CacheCompression compression,
+                                 int compressionThreshold) {
+        this.mapper = mapper;
+        this.registry = registry;
+        this.fallback = fallback;
+        this.compression = compression;
+        this.compressionThreshold = compressionThreshold;
+    }
+
+    /**
+     * Сериализатор для типов приложения поверх Smile с настройками Jackson по умолчанию
+     */
+    public static BinaryCacheSerializer create(RedisSerializer<Object> fallback,
+                                               CacheCompression compression,
+                                               int compressionThreshold) {
+        ObjectMapper mapper = Jackson2ObjectMapperBuilder.smile()
+                .featuresToDisable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                .build();
+        return new BinaryCacheSerializer(mapper, CacheTypeRegistry.defaults(), fallback,
+                compression, compressionThreshold);
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (value == null) {
+            return new byte[0];
+        }
+        CacheEnvelope envelope = value instanceof CacheEnvelope cacheEnvelope ? cacheEnvelope : null;
+        Object content = envelope != null ? envelope.getValue() : value;
+        if (content == null) {
+            return fallback.serialize(value);
+        }
+
+        byte shape;
+        int typeId;
+        JavaType type;
+        if (content instanceof List<?> list) {
+            Class<?> elementType = elementType(list);
+            Integer elementId = elementType != null ? registry.idOf(elementType) : Integer.valueOf(EMPTY_LIST_TYPE);
+            if (elementId == null) {
+                return fallback.serialize(value);
+            }
+            shape = SHAPE_LIST;
+            typeId = elementId;
+            type = listType(elementType != null ? elementType : Object.class);
+        } else {
+            Integer valueId = registry.idOf(content.getClass());
+            if (valueId == null) {
+                return fallback.serialize(value);
+            }
+            shape = SHAPE_VALUE;
+            typeId = valueId;
+            type = mapper.constructType(content.getClass());
+        }
+
+        try {
+            byte[] body = mapper.writerFor(type).writeValueAsBytes(content);
+            CacheCompression codec = body.length >= compressionThreshold ? compression : CacheCompression.NONE;
+            byte[] payload = codec.compress(body);
+            boolean compressed = codec != CacheCompression.NONE;
+
+            ByteBuffer buffer = ByteBuffer.allocate(HEADER_LENGTH
+                    + (envelope != null ? Long.BYTES : 0)
+                    + (compressed ? Integer.BYTES : 0)
+                    + payload.length);
+            buffer.put(MAGIC)
+                    .put((byte) codec.getId())
+                    .put(envelope != null ? (byte) (shape | ENVELOPE_FLAG) : shape)
+                    .putShort((short) typeId);
+            if (envelope != null) {
+                buffer.putLong(envelope.getRefreshAt());
+            }
+            if (compressed) {
+                buffer.putInt(body.length);
+            }
+            return buffer.put(payload).array();
+        } catch (IOException e) {
+            throw new SerializationException("Could not write cache value " + value.getClass().getName(), e);
+        }
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        if (bytes[0] != MAGIC) {
+            return fallback.deserialize(bytes);
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        buffer.get();
+        CacheCompression codec = CacheCompression.fromId(buffer.get());
+        byte header = buffer.get();
+        boolean enveloped = (header & ENVELOPE_FLAG) != 0;
+        byte shape = (byte) (header & ~ENVELOPE_FLAG);
+        int typeId = Short.toUnsignedInt(buffer.getShort());
+        long refreshAt = enveloped ? buffer.getLong() : 0;
+        int originalLength = codec != CacheCompression.NONE ? buffer.getInt() : -1;
+
+        byte[] payload = new byte[buffer.remaining()];
+        buffer.get(payload);
+        byte[] body = codec.decompress(payload, originalLength);
+
+        JavaType type = shape == SHAPE_LIST
+                ? listType(typeId == EMPTY_LIST_TYPE ? Object.class : resolve(typeId))
+                : mapper.constructType(resolve(typeId));
+        try {
+            Object value = mapper.readValue(body, type);
+            return enveloped ? new CacheEnvelope(value, refreshAt) : value;
+        } catch (IOException e) {
+            throw new SerializationException("Could not read cache value of type " + type, e);
+        }
+    }
+
+    private Class<?> resolve(int typeId) {
+        Class<?> type = registry.typeOf(typeId);
+        if (type == null) {
+            throw new SerializationException("Unknown cache type id: " + typeId);
+        }
+        return type;
+    }
+
+    private JavaType listType(Class<?> elementType) {
+        return mapper.getTypeFactory().constructCollectionType(List.class, elementType);
+    }
+
+    /**
+     * @return класс элементов списка, null для пустого списка и Object.class для разнотипного
+     */
+    private Class<?> elementType(List<?> list) {
+        if (list.isEmpty()) {
+            return null;
+        }
+        Class<?> type = null;
+        for (Object element : list) {
+            if (element == null) {
+                continue;
+            }
+            if (type == null) {
+                type = element.getClass();
+            } else if (type != element.getClass()) {
+                return Object.class;
+            }
+        }
+        return type != null ? type : Object.class;
+    }
+}
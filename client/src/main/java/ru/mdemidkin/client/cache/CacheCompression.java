@@ -0,0 +1,73 @@
+package ru.mdemidkin.client.cache;
+
+import com.github.luben.zstd.Zstd;
+import net.jpountz.lz4.LZ4Factory;
+
+/**
+ * Сжатие значений кеша. Идентификатор пишется в заголовок значения, поэтому менять его нельзя
+ */
+public enum CacheCompression {
+
+    NONE(0) {
+        @Override
+        public byte[] compress(byte[] data) {
+            return data;
+        }
+
+        @Override
+        public byte[] decompress(byte[] data, int originalLength) {
+            return data;
+        }
+    },
+
+    LZ4(1) {
+        @Override
+        public byte[] compress(byte[] data) {
+            return Lz4Holder.FACTORY.fastCompressor().compress(data);
+        }
+
+        @Override
+        public byte[] decompress(byte[] data, int originalLength) {
+            return Lz4Holder.FACTORY.fastDecompressor().decompress(data, originalLength);
+        }
+    },
+
+    ZSTD(2) {
+        @Override
+        public byte[] compress(byte[] data) {
+            return Zstd.compress(data);
+        }
+
+        @Override
+        public byte[] decompress(byte[] data, int originalLength) {
+            return Zstd.decompress(data, originalLength);
+        }
+    };
+
+    private final int id;
+
+    CacheCompression(int id) {
+        this.id = id;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public abstract byte[] compress(byte[] data);
+
+    public abstract byte[] decompress(byte[] data, int originalLength);
+
+    public static CacheCompression fromId(int id) {
+        for (CacheCompression compression : values()) {
+            if (compression.id == id) {
+                return compression;
+            }
+        }
+        throw new IllegalArgumentException("Unknown cache compression id: " + id);
+    }
+
+    private static final class Lz4Holder {
+        private static final LZ4Factory FACTORY = LZ4Factory.fastestInstance();
+    }
+}
@@ -0,0 +1,28 @@
+package ru.mdemidkin.client.cache;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Значение кеша с мягким сроком жизни: после refreshAt значение еще отдается, но обновляется в фоне.
+ * Жесткий срок жизни - TTL записи в Redis
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class CacheEnvelope {
+
+    private Object value;
+
+    /**
+     * Момент (epoch millis), после которого значение считается устаревшим
+     */
+    private long refreshAt;
+
+    public boolean isStale(long now) {
+        return now >= refreshAt;
+    }
+}
@@ -0,0 +1,172 @@
+package ru.mdemidkin.client.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import ru.mdemidkin.client.config.AppCacheProperties;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Поколения областей кеша. Счетчик поколения хранится в Redis, а текущее значение держится в памяти,
+ * чтобы его можно было синхронно подставлять в ключ {@code @Cacheable}:
+ * <pre>
+ * key = "{@cacheGenerations.current('catalog'), #search}"
+ * </pre>
+ * Новое поколение рассылается остальным узлам через {@link CacheInvalidationBus}.
+ * Если сообщение потеряно, поколение подтягивается из Redis с периодом app-cache.generation-sync-interval.
+ * Записи старых поколений никто не читает, они удаляются Redis по TTL.
+ * <p>
+ * Отсутствующий счетчик (первый запуск, рестарт Redis без персистентности, FLUSHALL) создается не с нуля,
+ * а со временем Redis в микросекундах, а отставший (восстановление из старого снимка) подтягивается
+ * до поколения узла. Поэтому новое поколение всегда больше выданных раньше: узлы не пропускают его
+ * как устаревшее и не читают локальные записи прошлой эпохи с тем же номером
+ */
+@Slf4j
+@Component
+public class CacheGenerations implements InitializingBean, DisposableBean {
+
+    private static final String KEY_PREFIX = "intershop:cache:generation:";
+    private static final String CACHE_NAME_PREFIX = "generation:";
+    private static final Duration INITIAL_SYNC_TIMEOUT = Duration.ofSeconds(5);
+
+    /**
+     * Следующее поколение KEYS[1]. Пустой счетчик начинается со времени Redis в микросекундах,
+     * счетчик меньше поколения узла ARGV[1] подтягивается до него
+     */
+    private static final RedisScript<Long> BUMP_SCRIPT = RedisScript.of("""
+            local generation = tonumber(redis.call('GET', KEYS[1]))
+            if not generation then
+                local time = redis.call('TIME')
+                generation = tonumber(time[1]) * 1000000 + tonumber(time[2])
+            end
+            generation = math.max(generation, tonumber(ARGV[1])) + 1
+            redis.call('SET', KEYS[1], string.format('%d', generation))
+            return generation""", Long.class);
+
+    private final ReactiveStringRedisTemplate redisTemplate;
+    private final CacheInvalidationBus invalidationBus;
+    private final Duration syncInterval;
+    private final Map<CacheScope, AtomicLong> generations = new EnumMap<>(CacheScope.class);
+    private final Sinks.Many<CacheScope> changes = Sinks.many().multicast().directBestEffort();
+
+    private Disposable subscriptions;
+
+    public CacheGenerations(ReactiveStringRedisTemplate redisTemplate,
+                            CacheInvalidationBus invalidationBus,
+                            AppCacheProperties properties) {
+        this.redisTemplate = redisTemplate;
+        this.invalidationBus = invalidationBus;
+        this.syncInterval = properties.getGenerationSyncInterval();
+        for (CacheScope scope : CacheScope.values()) {
+            generations.put(scope, new AtomicLong());
+        }
+    }
+
+    /**
+     * Текущее поколение области, для SpEL в ключах кеша
+     */
+    public long current(String scope) {
+        return current(CacheScope.from(scope));
+    }
+
+    public long current(CacheScope scope) {
+        return generations.get(scope).get();
+    }
+
+    /**
+     * Области, поколение которых выросло, в том числе по сообщению или сверке с другим узлом
+     */
+    public Flux<CacheScope> changes() {
+        return changes.asFlux();
+    }
+
+    /**
+     * Переводит области на новое поколение. Если Redis недоступен, записи доживают до своего TTL
+     */
+    public Mono<Void> bump(CacheScope... scopes) {
+        return Flux.fromArray(scopes)
+                .flatMap(scope -> redisTemplate.execute(BUMP_SCRIPT, List.of(key(scope)),
+                                List.of(String.valueOf(current(scope))))
+                        .next()
+                        .doOnNext(generation -> {
+                            advance(scope, generation);
+                            invalidationBus.publishEvict(CACHE_NAME_PREFIX + scope.name(), String.valueOf(generation));
+                        })
+                        .onErrorResume(error -> {
+                            log.warn("Failed to bump cache generation {}", scope, error);
+                            return Mono.empty();
+                        }))
+                .then();
+    }
+
+    /**
+     * Первая сверка выполняется до того, как бин отдан кешируемым сервисам и прогреву: иначе первые запросы
+     * читали бы и писали общие ключи поколения 0, оставшиеся в Redis от прошлых запусков
+     */
+    @Override
+    public void afterPropertiesSet() {
+        sync().timeout(INITIAL_SYNC_TIMEOUT, Mono.fromRunnable(
+                        () -> log.warn("Cache generations are not synced in {}", INITIAL_SYNC_TIMEOUT)))
+                .block();
+        subscriptions = Disposables.composite(
+                invalidationBus.listen(this::onInvalidation),
+                Flux.interval(syncInterval)
+                        .concatMap(tick -> sync())
+                        .subscribe());
+    }
+
+    @Override
+    public void destroy() {
+        if (subscriptions != null) {
+            subscriptions.dispose();
+        }
+    }
+
+    void onInvalidation(CacheInvalidation invalidation) {
+        if (invalidation.isClear() || !invalidation.cacheName().startsWith(CACHE_NAME_PREFIX)) {
+            return;
+        }
+        CacheScope scope = CacheScope.from(invalidation.cacheName().substring(CACHE_NAME_PREFIX.length()));
+        advance(scope, Long.parseLong(invalidation.key()));
+    }
+
+    Mono<Void> sync() {
+        return Flux.fromArray(CacheScope.values())
+                .concatMap(scope -> redisTemplate.opsForValue().get(key(scope))
+                        .doOnNext(generation -> advance(scope, Long.parseLong(generation))))
+                .onErrorResume(error -> {
+                    log.warn("Failed to sync cache generations", error);
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    /**
+     * Поколение только растет: устаревшее сообщение или ответ Redis не возвращают старые записи.
+     * После потери счетчика рост обеспечивает {@link #BUMP_SCRIPT}
+     */
+    private void advance(CacheScope scope, long generation) {
+        long previous = generations.get(scope).getAndAccumulate(generation, Math::max);
+        if (generation > previous) {
+            changes.emitNext(scope, Sinks.EmitFailureHandler.busyLooping(Duration.ofMillis(100)));
+        }
+    }
+
+    private String key(CacheScope scope) {
+        return KEY_PREFIX + scope.name().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,32 @@
+package ru.mdemidkin.client.cache;
+
+/**
+ * Сообщение об инвалидации локального кеша на других узлах
+ *
+ * @param origin    узел, на котором изменился кеш (свои сообщения узел пропускает)
+ * @param cacheName имя кеша
+ * @param key       ключ, null - очистка всего кеша
+ */
+public record CacheInvalidation(
+        String origin,
+        String cacheName,
+        String key
+) {
+
+    private static final String SEPARATOR = "\n";
+
+    public static CacheInvalidation decode(String message) {
+        String[] parts = message.split(SEPARATOR, 3);
+        return new CacheInvalidation(parts[0], parts[1], parts.length > 2 ? parts[2] : null);
+    }
+
+    public String encode() {
+        return key == null
+                ? origin + SEPARATOR + cacheName
+                : origin + SEPARATOR + cacheName + SEPARATOR + key;
+    }
+
+    public boolean isClear() {
+        return key == null;
+    }
+}
@@ -0,0 +1,56 @@
+package ru.mdemidkin.client.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.ReactiveSubscription;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.util.retry.Retry;
+import ru.mdemidkin.client.config.AppCacheProperties;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Рассылка инвалидаций локальных кешей между узлами через Redis pub/sub
+ */
+@Slf4j
+@Component
+public class CacheInvalidationBus {
+
+    private final ReactiveStringRedisTemplate redisTemplate;
+    private final String channel;
+    private final String nodeId = UUID.randomUUID().toString();
+
+    public CacheInvalidationBus(ReactiveStringRedisTemplate redisTemplate, AppCacheProperties properties) {
+        this.redisTemplate = redisTemplate;
+        this.channel = properties.getInvalidationChannel();
+    }
+
+    public void publishEvict(String cacheName, String key) {
+        publish(new CacheInvalidation(nodeId, cacheName, key));
+    }
+
+    public void publishClear(String cacheName) {
+        publish(new CacheInvalidation(nodeId, cacheName, null));
+    }
+
+    /**
+     * Подписка на инвалидации от других узлов. При обрыве соединения подписка восстанавливается
+     */
+    public Disposable listen(Consumer<CacheInvalidation> handler) {
+        return redisTemplate.listenToChannel(channel)
+                .map(ReactiveSubscription.Message::getMessage)
+                .map(CacheInvalidation::decode)
+                .filter(invalidation -> !nodeId.equals(invalidation.origin()))
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1))
+                        .maxBackoff(Duration.ofSeconds(30)))
+                .subscribe(handler, error -> log.error("Cache invalidation listener stopped", error));
+    }
+
+    private void publish(CacheInvalidation invalidation) {
+        redisTemplate.convertAndSend(channel, invalidation.encode())
+                .subscribe(null, error -> log.warn("Failed to publish cache invalidation {}", invalidation, error));
+    }
+}
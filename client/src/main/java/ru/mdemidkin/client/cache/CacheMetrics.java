@@ -0,0 +1,118 @@
+package ru.mdemidkin.client.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Метрики одного кеша, все с тегом cache:
+ * <ul>
+ *     <li>cache.gets - обращения с тегами result (hit, miss) и level (local - L1, remote - Redis)</li>
+ *     <li>cache.puts, cache.evictions - запись и удаление</li>
+ *     <li>cache.loads - время загрузки по промаху с тегом result (success, failure)</li>
+ *     <li>cache.payload.size - размер значения в Redis в байтах с тегом operation (read, write)</li>
+ * </ul>
+ * Meter registry возвращает уже зарегистрированные метрики, поэтому экземпляры для одного кеша
+ * в разных слоях пишут в одни и те же счетчики
+ */
+public class CacheMetrics {
+
+    private final MeterRegistry meterRegistry;
+    private final String cacheName;
+    private final Counter localHits;
+    private final Counter remoteHits;
+    private final Counter misses;
+    private final Counter puts;
+    private final Counter evictions;
+    private final DistributionSummary readSize;
+    private final DistributionSummary writeSize;
+
+    public CacheMetrics(String cacheName, MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.cacheName = cacheName;
+        this.localHits = gets("hit", "local");
+        this.remoteHits = gets("hit", "remote");
+        this.misses = gets("miss", "remote");
+        this.puts = Counter.builder("cache.puts")
+                .description("Cache entries written")
+                .tag("cache", cacheName)
+                .register(meterRegistry);
+        this.evictions = Counter.builder("cache.evictions")
+                .description("Cache entries evicted")
+                .tag("cache", cacheName)
+                .register(meterRegistry);
+        this.readSize = payloadSize("read");
+        this.writeSize = payloadSize("write");
+    }
+
+    public void localHit() {
+        localHits.increment();
+    }
+
+    public void remoteHit() {
+        remoteHits.increment();
+    }
+
+    public void miss() {
+        misses.increment();
+    }
+
+    public void put() {
+        puts.increment();
+    }
+
+    public void evict() {
+        evictions.increment();
+    }
+
+    public void payloadRead(int bytes) {
+        readSize.record(bytes);
+    }
+
+    public void payloadWritten(int bytes) {
+        writeSize.record(bytes);
+    }
+
+    /**
+     * Загрузчик, который считает промах и измеряет время загрузки
+     */
+    public <T> Supplier<CompletableFuture<T>> timedLoader(Supplier<CompletableFuture<T>> valueLoader) {
+        return () -> {
+            miss();
+            Timer.Sample sample = Timer.start(meterRegistry);
+            return valueLoader.get().whenComplete((value, error) ->
+                    sample.stop(loads(error == null ? "success" : "failure")));
+        };
+    }
+
+    private Timer loads(String result) {
+        return Timer.builder("cache.loads")
+                .description("Time to load a value after a cache miss")
+                .tag("cache", cacheName)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private Counter gets(String result, String level) {
+        return Counter.builder("cache.gets")
+                .description("Cache lookups")
+                .tag("cache", cacheName)
+                .tag("result", result)
+                .tag("level", level)
+                .register(meterRegistry);
+    }
+
+    private DistributionSummary payloadSize(String operation) {
+        return DistributionSummary.builder("cache.payload.size")
+                .description("Serialized size of cache values in Redis")
+                .baseUnit("bytes")
+                .tag("cache", cacheName)
+                .tag("operation", operation)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+    }
+}
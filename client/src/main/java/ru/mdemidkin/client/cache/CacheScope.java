@@ -0,0 +1,26 @@
+package ru.mdemidkin.client.cache;
+
+import java.util.Locale;
+
+/**
+ * Область инвалидации кешей. Ключи кешей области содержат ее поколение,
+ * поэтому увеличение поколения логически сбрасывает все записи области без обхода ключей в Redis
+ */
+public enum CacheScope {
+    /**
+     * Данные каталога: страницы поиска и карточки товаров
+     */
+    CATALOG,
+    /**
+     * Содержимое корзины
+     */
+    CART,
+    /**
+     * История заказов
+     */
+    ORDERS;
+
+    public static CacheScope from(String name) {
+        return valueOf(name.toUpperCase(Locale.ROOT));
+    }
+}
@@ -0,0 +1,15 @@
+package ru.mdemidkin.client.cache;
+
+/**
+ * Формат значений в Redis
+ */
+public enum CacheSerializationFormat {
+    /**
+     * JSON с именем класса в каждом вложенном объекте
+     */
+    JSON,
+    /**
+     * Бинарный формат (Smile) с идентификатором типа из {@link CacheTypeRegistry} только в заголовке
+     */
+    BINARY
+}
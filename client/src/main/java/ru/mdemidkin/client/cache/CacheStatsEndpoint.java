@@ -0,0 +1,73 @@
+package ru.mdemidkin.client.cache;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * /actuator/cachestats: число ключей и примерный объем каждого кеша в Redis, включая записи старых поколений,
+ * которые еще не удалены по TTL. Объем считается по размеру значений и ключей первых {@value #SAMPLE_SIZE}
+ * ключей и экстраполируется на все ключи кеша. Попадания, промахи и время загрузки - в /actuator/metrics/cache.*
+ */
+@Component
+@Endpoint(id = "cachestats")
+public class CacheStatsEndpoint {
+
+    private static final int SAMPLE_SIZE = 100;
+    private static final int SCAN_BATCH_SIZE = 500;
+
+    private final CacheManager cacheManager;
+    private final ReactiveStringRedisTemplate redisTemplate;
+
+    public CacheStatsEndpoint(CacheManager cacheManager, ReactiveStringRedisTemplate redisTemplate) {
+        this.cacheManager = cacheManager;
+        this.redisTemplate = redisTemplate;
+    }
+
+    @ReadOperation
+    public Mono<Map<String, CacheStats>> cacheStats() {
+        return Flux.fromIterable(cacheManager.getCacheNames())
+                .concatMap(name -> stats(name).map(stats -> Map.entry(name, stats)))
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, (a, b) -> a, TreeMap::new));
+    }
+
+    /**
+     * Ключи обходятся SCAN-ом без загрузки списка в память: считаются все, измеряются первые SAMPLE_SIZE
+     */
+    private Mono<CacheStats> stats(String cacheName) {
+        return redisTemplate.scan(ScanOptions.scanOptions().match(cacheName + "::*").count(SCAN_BATCH_SIZE).build())
+                .index()
+                .concatMap(entry -> entry.getT1() < SAMPLE_SIZE ? entrySize(entry.getT2()) : Mono.just(-1L))
+                .reduceWith(() -> new long[3], (totals, size) -> {
+                    totals[0]++;
+                    if (size >= 0) {
+                        totals[1]++;
+                        totals[2] += size;
+                    }
+                    return totals;
+                })
+                .map(totals -> new CacheStats(totals[0], totals[1] == 0 ? 0 : totals[2] * totals[0] / totals[1]));
+    }
+
+    private Mono<Long> entrySize(String key) {
+        return redisTemplate.opsForValue().size(key)
+                .defaultIfEmpty(0L)
+                .map(valueSize -> valueSize + key.length());
+    }
+
+    /**
+     * @param keys              число ключей кеша в Redis
+     * @param approximateBytes  примерный объем ключей и значений в байтах, без накладных расходов Redis
+     */
+    public record CacheStats(long keys, long approximateBytes) {
+    }
+}
@@ -0,0 +1,55 @@
+package ru.mdemidkin.client.cache;
+
+import ru.mdemidkin.client.dto.CartItemListDto;
+import ru.mdemidkin.client.dto.ItemsSortedSearchPageDto;
+import ru.mdemidkin.client.dto.OrderDto;
+import ru.mdemidkin.client.model.CartItem;
+import ru.mdemidkin.client.model.Item;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Типы значений кеша с постоянными идентификаторами для бинарного формата.
+ * Идентификатор попадает в Redis, поэтому существующие номера не переиспользуются, новые типы добавляются в конец
+ */
+public class CacheTypeRegistry {
+
+    private final Map<Class<?>, Integer> idsByType = new HashMap<>();
+    private final Map<Integer, Class<?>> typesById = new HashMap<>();
+
+    public static CacheTypeRegistry defaults() {
+        return new CacheTypeRegistry()
+                .register(1, Item.class)
+                .register(2, CartItem.class)
+                .register(3, OrderDto.class)
+                .register(4, CartItemListDto.class)
+                .register(5, ItemsSortedSearchPageDto.class);
+    }
+
+    public CacheTypeRegistry register(int id, Class<?> type) {
+        if (id <= 0 || id > 0xFFFF) {
+            throw new IllegalArgumentException("Cache type id must be in 1..65535: " + id);
+        }
+        if (typesById.containsKey(id) || idsByType.containsKey(type)) {
+            throw new IllegalArgumentException("Cache type is already registered: " + id + " " + type.getName());
+        }
+        idsByType.put(type, id);
+        typesById.put(id, type);
+        return this;
+    }
+
+    /**
+     * @return идентификатор типа или null, если тип не зарегистрирован
+     */
+    public Integer idOf(Class<?> type) {
+        return idsByType.get(type);
+    }
+
+    /**
+     * @return тип по идентификатору или null, если значение записано более новой версией приложения
+     */
+    public Class<?> typeOf(int id) {
+        return typesById.get(id);
+    }
+}
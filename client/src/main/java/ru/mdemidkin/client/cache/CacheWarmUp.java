@@ -0,0 +1,118 @@
+package ru.mdemidkin.client.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.mdemidkin.client.config.AppCacheProperties;
+import ru.mdemidkin.client.dto.ItemsSortedSearchPageDto;
+import ru.mdemidkin.client.dto.PagingDto;
+import ru.mdemidkin.client.model.enums.SortType;
+import ru.mdemidkin.client.repository.OrderItemRepository;
+import ru.mdemidkin.client.service.CatalogService;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Прогрев кешей каталога после старта. Runner выполняется до ApplicationReadyEvent, поэтому readiness
+ * (и индикатор cacheWarmUp в /actuator/health) становится UP только после прогрева:
+ * балансировщик не отправляет трафик на холодный узел.
+ * <p>
+ * Страницы загружаются так же, как их листает пользователь: первая страница по курсору, дальше по nextCursor.
+ * Ошибки и таймаут прогрева не останавливают запуск
+ */
+@Slf4j
+@Component
+public class CacheWarmUp implements ApplicationRunner, HealthIndicator {
+
+    private final CatalogService catalogService;
+    private final OrderItemRepository orderItemRepository;
+    private final AppCacheProperties.WarmUp properties;
+
+    private volatile boolean completed;
+
+    public CacheWarmUp(CatalogService catalogService,
+                       OrderItemRepository orderItemRepository,
+                       AppCacheProperties cacheProperties) {
+        this.catalogService = catalogService;
+        this.orderItemRepository = orderItemRepository;
+        this.properties = cacheProperties.getWarmUp();
+        this.completed = !properties.isEnabled();
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        long startedAt = System.nanoTime();
+        AtomicInteger warmed = new AtomicInteger();
+        try {
+            warmUp(warmed).block(properties.getTimeout());
+            log.info("Cache warm-up finished: {} entries in {} ms", warmed.get(),
+                    Duration.ofNanos(System.nanoTime() - startedAt).toMillis());
+        } catch (RuntimeException e) {
+            log.warn("Cache warm-up interrupted after {} entries", warmed.get(), e);
+        } finally {
+            completed = true;
+        }
+    }
+
+    @Override
+    public Health health() {
+        return completed
+                ? Health.up().build()
+                : Health.outOfService().withDetail("reason", "cache warm-up in progress").build();
+    }
+
+    Mono<Void> warmUp(AtomicInteger warmed) {
+        Flux<Mono<Long>> tasks = Flux.concat(
+                Flux.fromArray(SortType.values()).map(this::warmPages),
+                topOrderedItemIds().map(this::warmItem));
+        return tasks
+                .flatMap(task -> task.onErrorResume(error -> {
+                    log.warn("Cache warm-up task failed", error);
+                    return Mono.just(0L);
+                }), properties.getConcurrency())
+                .doOnNext(count -> warmed.addAndGet(count.intValue()))
+                .then();
+    }
+
+    /**
+     * Страницы одной сортировки загружаются последовательно: курсор следующей берется из предыдущей
+     */
+    private Mono<Long> warmPages(SortType sortType) {
+        return Mono.defer(() -> catalogService.searchItemsByCursor("", sortType, 1, properties.getPageSize(),
+                        null, null))
+                .expand(page -> nextPage(page, sortType))
+                .count();
+    }
+
+    private Mono<ItemsSortedSearchPageDto> nextPage(ItemsSortedSearchPageDto page, SortType sortType) {
+        PagingDto paging = page.responsePagingDto();
+        if (paging.pageNumber() >= properties.getPages() || !paging.hasNext() || paging.nextCursor() == null) {
+            return Mono.empty();
+        }
+        return catalogService.searchItemsByCursor("", sortType, paging.pageNumber() + 1, paging.pageSize(),
+                paging.nextCursor(), null);
+    }
+
+    private Flux<Long> topOrderedItemIds() {
+        return orderItemRepository.findTopOrderedItemIds(
+                        LocalDateTime.now().minus(properties.getRecentOrdersWindow()), properties.getTopItems())
+                .onErrorResume(error -> {
+                    log.warn("Failed to load top ordered items for warm-up", error);
+                    return Flux.empty();
+                });
+    }
+
+    private Mono<Long> warmItem(Long id) {
+        return catalogService.getById(id).map(item -> 1L);
+    }
+}
@@ -0,0 +1,24 @@
+package ru.mdemidkin.client.cache;
+
+import lombok.RequiredArgsConstructor;
+import org.reactivestreams.Publisher;
+import org.springframework.data.r2dbc.mapping.OutboundRow;
+import org.springframework.data.r2dbc.mapping.event.AfterSaveCallback;
+import org.springframework.data.relational.core.sql.SqlIdentifier;
+import org.springframework.stereotype.Component;
+import ru.mdemidkin.client.model.Item;
+
+/**
+ * Сохранение товара через репозиторий переводит кеши каталога на новое поколение
+ */
+@Component
+@RequiredArgsConstructor
+public class CatalogCacheInvalidator implements AfterSaveCallback<Item> {
+
+    private final CacheGenerations cacheGenerations;
+
+    @Override
+    public Publisher<Item> onAfterSave(Item entity, OutboundRow outboundRow, SqlIdentifier table) {
+        return cacheGenerations.bump(CacheScope.CATALOG).thenReturn(entity);
+    }
+}
@@ -0,0 +1,123 @@
+package ru.mdemidkin.client.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.r2dbc.mapping.OutboundRow;
+import org.springframework.data.r2dbc.mapping.event.AfterSaveCallback;
+import org.springframework.data.relational.core.sql.SqlIdentifier;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.mdemidkin.client.config.AppCacheProperties;
+import ru.mdemidkin.client.model.Item;
+import ru.mdemidkin.client.repository.ItemRepository;
+
+import java.util.List;
+
+/**
+ * Фильтр Блума по id существующих товаров. Строится при старте приложения и пополняется при сохранении
+ * товара: id сохраненного товара добавляется на этом узле и рассылается остальным через {@link CacheInvalidationBus},
+ * так что изменение цены или названия не перечитывает таблицу. На случай потерянного сообщения фильтр
+ * перестраивается целиком раз в rebuild-interval. Пока фильтр не построен (или выключен), пропускает все id
+ */
+@Slf4j
+@Component
+public class ItemIdFilter implements AfterSaveCallback<Item>, DisposableBean {
+
+    private static final String CACHE_NAME = "itemIds";
+
+    private final ItemRepository itemRepository;
+    private final CacheInvalidationBus invalidationBus;
+    private final AppCacheProperties.ItemFilter properties;
+    private final Disposable.Swap subscription = Disposables.swap();
+
+    private volatile BloomFilter filter;
+
+    public ItemIdFilter(ItemRepository itemRepository,
+                        CacheInvalidationBus invalidationBus,
+                        AppCacheProperties cacheProperties) {
+        this.itemRepository = itemRepository;
+        this.invalidationBus = invalidationBus;
+        this.properties = cacheProperties.getItemFilter();
+    }
+
+    /**
+     * @return false, если товара с таким id точно нет
+     */
+    public boolean mightContain(Long id) {
+        if (id == null) {
+            return false;
+        }
+        BloomFilter current = filter;
+        return current == null || current.mightContain(id);
+    }
+
+    @EventListener(ApplicationStartedEvent.class)
+    public void onStarted() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        subscription.update(Disposables.composite(
+                invalidationBus.listen(this::onInvalidation),
+                Flux.interval(properties.getRebuildInterval(), properties.getRebuildInterval())
+                        .onBackpressureDrop()
+                        .concatMap(tick -> rebuild(), 1)
+                        .subscribe()));
+        rebuild().subscribe();
+    }
+
+    @Override
+    public Publisher<Item> onAfterSave(Item entity, OutboundRow outboundRow, SqlIdentifier table) {
+        if (entity.getId() != null) {
+            put(entity.getId());
+            invalidationBus.publishEvict(CACHE_NAME, entity.getId().toString());
+        }
+        return Mono.just(entity);
+    }
+
+    void onInvalidation(CacheInvalidation invalidation) {
+        if (CACHE_NAME.equals(invalidation.cacheName()) && !invalidation.isClear()) {
+            put(Long.parseLong(invalidation.key()));
+        }
+    }
+
+    @Override
+    public void destroy() {
+        subscription.dispose();
+    }
+
+    private void put(Long id) {
+        BloomFilter current = filter;
+        if (current != null) {
+            current.put(id);
+        }
+    }
+
+    /**
+     * Строит новый фильтр по всем id и подменяет им текущий. Размер берется с запасом на рост каталога
+     */
+    Mono<Void> rebuild() {
+        return itemRepository.findAllIds()
+                .collectList()
+                .doOnNext(this::replaceWith)
+                .onErrorResume(error -> {
+                    log.warn("Failed to build item id filter", error);
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    private void replaceWith(List<Long> ids) {
+        BloomFilter rebuilt = new BloomFilter(
+                Math.max(properties.getExpectedInsertions(), 2L * ids.size()),
+                properties.getFalsePositiveProbability());
+        ids.forEach(rebuilt::put);
+        filter = rebuilt;
+        log.info("Item id filter built for {} items", ids.size());
+    }
+}
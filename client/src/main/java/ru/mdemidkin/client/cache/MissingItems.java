@@ -0,0 +1,52 @@
+package ru.mdemidkin.client.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Негативный кеш: id товаров, которых нет в БД. TTL короткий (app-cache.redis.caches.missingItems),
+ * а ключ содержит поколение catalog, поэтому сохранение товара сразу снимает отметку
+ */
+@Slf4j
+@Component
+public class MissingItems {
+
+    public static final String CACHE_NAME = "missingItems";
+
+    private final Cache cache;
+    private final CacheGenerations cacheGenerations;
+
+    public MissingItems(CacheManager cacheManager, CacheGenerations cacheGenerations) {
+        this.cache = cacheManager.getCache(CACHE_NAME);
+        this.cacheGenerations = cacheGenerations;
+    }
+
+    /**
+     * @return true, если недавно выяснилось, что товара нет. Ошибка Redis считается промахом
+     */
+    public Mono<Boolean> isMissing(Long id) {
+        return Mono.defer(() -> {
+                    CompletableFuture<?> future = cache.retrieve(key(id));
+                    return future != null ? Mono.fromFuture(future) : Mono.empty();
+                })
+                .map(wrapper -> true)
+                .defaultIfEmpty(false)
+                .onErrorResume(error -> {
+                    log.warn("Failed to read missing item {}", id, error);
+                    return Mono.just(false);
+                });
+    }
+
+    public void markMissing(Long id) {
+        cache.put(key(id), Boolean.TRUE);
+    }
+
+    private String key(Long id) {
+        return cacheGenerations.current(CacheScope.CATALOG) + ":" + id;
+    }
+}
@@ -0,0 +1,182 @@
+package ru.mdemidkin.client.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Кеш в Redis поверх {@link ReactiveRedisTemplate}: чтение ({@code retrieve}) и загрузка по промаху асинхронные,
+ * запись и удаление отправляются без ожидания ответа. Поэтому {@code @Cacheable}, {@code @CachePut}
+ * и {@code @CacheEvict} на методах, возвращающих Mono/Flux, не блокируют потоки event loop.
+ * <p>
+ * Синхронные {@link #get(Object)} и {@link #putIfAbsent} блокируют поток и предназначены только
+ * для императивного кода. Значения null не сохраняются.
+ * <p>
+ * Значения сериализуются здесь, а не в шаблоне, чтобы размер каждого значения попадал
+ * в метрику cache.payload.size ({@link CacheMetrics})
+ */
+@Slf4j
+public class ReactiveRedisCache implements Cache {
+
+    private static final int CLEAR_BATCH_SIZE = 500;
+
+    private final String name;
+    private final ReactiveRedisTemplate<String, byte[]> redisTemplate;
+    private final RedisSerializer<Object> serializer;
+    private final Duration timeToLive;
+    private final CacheMetrics metrics;
+
+    public ReactiveRedisCache(String name,
+                              ReactiveRedisTemplate<String, byte[]> redisTemplate,
+                              RedisSerializer<Object> serializer,
+                              Duration timeToLive,
+                              CacheMetrics metrics) {
+        this.name = name;
+        this.redisTemplate = redisTemplate;
+        this.serializer = serializer;
+        this.timeToLive = timeToLive;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return redisTemplate;
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        Object value = read(redisKey(key)).block();
+        return value != null ? new SimpleValueWrapper(value) : null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Class<T> type) {
+        ValueWrapper wrapper = get(key);
+        Object value = wrapper != null ? wrapper.get() : null;
+        if (value != null && type != null && !type.isInstance(value)) {
+            throw new IllegalStateException("Cached value is not of required type [" + type.getName() + "]: " + value);
+        }
+        return (T) value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        ValueWrapper wrapper = get(key);
+        if (wrapper != null) {
+            return (T) wrapper.get();
+        }
+        try {
+            T value = valueLoader.call();
+            put(key, value);
+            return value;
+        } catch (Exception e) {
+            throw new ValueRetrievalException(key, valueLoader, e);
+        }
+    }
+
+    @Override
+    public CompletableFuture<?> retrieve(Object key) {
+        return read(redisKey(key))
+                .map(SimpleValueWrapper::new)
+                .toFuture();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> retrieve(Object key, Supplier<CompletableFuture<T>> valueLoader) {
+        String redisKey = redisKey(key);
+        return read(redisKey)
+                .switchIfEmpty(Mono.fromFuture(valueLoader)
+                        .flatMap(value -> store(redisKey, value).thenReturn(value)))
+                .map(value -> (T) value)
+                .toFuture();
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        if (value == null) {
+            return;
+        }
+        String redisKey = redisKey(key);
+        store(redisKey, value)
+                .subscribe(null, error -> log.warn("Failed to put cache {} key {}", name, redisKey, error));
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        String redisKey = redisKey(key);
+        Boolean stored = redisTemplate.opsForValue().setIfAbsent(redisKey, write(value), timeToLive).block();
+        return Boolean.TRUE.equals(stored) ? null : get(key);
+    }
+
+    @Override
+    public void evict(Object key) {
+        String redisKey = redisKey(key);
+        redisTemplate.delete(redisKey)
+                .subscribe(null, error -> log.warn("Failed to evict cache {} key {}", name, redisKey, error));
+    }
+
+    @Override
+    public boolean evictIfPresent(Object key) {
+        Long deleted = redisTemplate.delete(redisKey(key)).block();
+        return deleted != null && deleted > 0;
+    }
+
+    @Override
+    public void clear() {
+        deleteAll()
+                .subscribe(null, error -> log.warn("Failed to clear cache {}", name, error));
+    }
+
+    @Override
+    public boolean invalidate() {
+        Long deleted = deleteAll().block();
+        return deleted != null && deleted > 0;
+    }
+
+    private Mono<Object> read(String redisKey) {
+        return redisTemplate.opsForValue().get(redisKey)
+                .mapNotNull(bytes -> {
+                    metrics.payloadRead(bytes.length);
+                    return serializer.deserialize(bytes);
+                });
+    }
+
+    private Mono<Boolean> store(String redisKey, Object value) {
+        return Mono.fromCallable(() -> write(value))
+                .flatMap(bytes -> redisTemplate.opsForValue().set(redisKey, bytes, timeToLive));
+    }
+
+    private byte[] write(Object value) {
+        byte[] bytes = serializer.serialize(value);
+        metrics.payloadWritten(bytes.length);
+        return bytes;
+    }
+
+    private Mono<Long> deleteAll() {
+        return redisTemplate.scan(ScanOptions.scanOptions().match(name + "::*").count(CLEAR_BATCH_SIZE).build())
+                .buffer(CLEAR_BATCH_SIZE)
+                .flatMap(keys -> redisTemplate.delete(keys.toArray(String[]::new)))
+                .reduce(0L, Long::sum);
+    }
+
+    private String redisKey(Object key) {
+        return name + "::" + key;
+    }
+}
@@ -0,0 +1,58 @@
+package ru.mdemidkin.client.cache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import ru.mdemidkin.client.config.AppCacheProperties;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Кеши {@link ReactiveRedisCache}. TTL по умолчанию задается spring.cache.redis.time-to-live,
+ * для отдельных кешей - app-cache.redis.caches.*.time-to-live.
+ * Шаблон работает с байтами, значения сериализует сам кеш
+ */
+public class ReactiveRedisCacheManager implements CacheManager {
+
+    private final ReactiveRedisTemplate<String, byte[]> redisTemplate;
+    private final RedisSerializer<Object> serializer;
+    private final Duration defaultTimeToLive;
+    private final AppCacheProperties.Redis properties;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Cache> caches = new ConcurrentHashMap<>();
+
+    public ReactiveRedisCacheManager(ReactiveRedisConnectionFactory connectionFactory,
+                                     RedisSerializer<Object> serializer,
+                                     Duration defaultTimeToLive,
+                                     AppCacheProperties.Redis properties,
+                                     MeterRegistry meterRegistry) {
+        this.redisTemplate = new ReactiveRedisTemplate<>(connectionFactory, RedisSerializationContext
+                .<String, byte[]>newSerializationContext(new StringRedisSerializer())
+                .value(RedisSerializer.byteArray())
+                .build());
+        this.serializer = serializer;
+        this.defaultTimeToLive = defaultTimeToLive;
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        return caches.computeIfAbsent(name, cacheName -> new ReactiveRedisCache(cacheName, redisTemplate, serializer,
+                properties.timeToLive(cacheName, defaultTimeToLive), new CacheMetrics(cacheName, meterRegistry)));
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return Collections.unmodifiableSet(caches.keySet());
+    }
+}
@@ -0,0 +1,84 @@
+package ru.mdemidkin.client.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import reactor.core.publisher.Mono;
+import ru.mdemidkin.client.config.AppCacheProperties;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Защита от одновременной загрузки одного ключа на разных узлах.
+ * Загружает значение узел, захвативший блокировку в Redis (SET NX PX), остальные ждут, пока значение
+ * появится в кеше. Если значение не появилось за wait-timeout или Redis недоступен, узел загружает его сам
+ */
+@Slf4j
+public class RedisLoadLock {
+
+    private static final String KEY_PREFIX = "intershop:cache:lock:";
+    private static final RedisScript<Long> RELEASE_SCRIPT = RedisScript.of("""
+            if redis.call('get', KEYS[1]) == ARGV[1] then
+                return redis.call('del', KEYS[1])
+            end
+            return 0
+            """, Long.class);
+
+    private final ReactiveStringRedisTemplate redisTemplate;
+    private final Duration lockTtl;
+    private final Duration waitTimeout;
+    private final Duration pollInterval;
+
+    public RedisLoadLock(ReactiveStringRedisTemplate redisTemplate, AppCacheProperties.LoadLock properties) {
+        this.redisTemplate = redisTemplate;
+        this.lockTtl = properties.getLockTtl();
+        this.waitTimeout = properties.getWaitTimeout();
+        this.pollInterval = properties.getPollInterval();
+    }
+
+    /**
+     * @param name   имя блокировки (кеш и ключ)
+     * @param lookup чтение значения из общего кеша
+     * @param loader загрузка значения с записью в кеш
+     */
+    public <T> CompletableFuture<T> load(String name,
+                                         Supplier<CompletableFuture<?>> lookup,
+                                         Supplier<CompletableFuture<T>> loader) {
+        String lockKey = KEY_PREFIX + name;
+        String token = UUID.randomUUID().toString();
+        Mono<T> load = Mono.fromFuture(loader);
+
+        return redisTemplate.opsForValue().setIfAbsent(lockKey, token, lockTtl)
+                .onErrorResume(error -> {
+                    log.warn("Failed to acquire cache load lock {}", lockKey, error);
+                    return Mono.just(true);
+                })
+                .flatMap(acquired -> acquired
+                        ? load.doFinally(signal -> release(lockKey, token))
+                        : this.<T>awaitValue(lookup).switchIfEmpty(load))
+                .toFuture();
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> Mono<T> awaitValue(Supplier<CompletableFuture<?>> lookup) {
+        return Mono.defer(() -> {
+                    CompletableFuture<?> future = lookup.get();
+                    return future != null ? Mono.fromFuture(future) : Mono.empty();
+                })
+                .map(result -> Optional.ofNullable(result instanceof Cache.ValueWrapper wrapper ? wrapper.get() : result))
+                .repeatWhenEmpty(attempts -> attempts.delayElements(pollInterval))
+                .timeout(waitTimeout, Mono.empty())
+                .flatMap(value -> Mono.justOrEmpty((T) value.orElse(null)));
+    }
+
+    private void release(String lockKey, String token) {
+        redisTemplate.execute(RELEASE_SCRIPT, List.of(lockKey), List.of(token))
+                .subscribe(null, error -> log.warn("Failed to release cache load lock {}", lockKey, error));
+    }
+}
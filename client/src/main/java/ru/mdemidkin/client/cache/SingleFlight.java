@@ -0,0 +1,65 @@
+package ru.mdemidkin.client.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Объединение одновременных загрузок одного ключа в пределах JVM: первый промах запускает загрузку,
+ * остальные получают ее результат. Метрики:
+ * <ul>
+ *     <li>cache.single-flight.loads - выполненные загрузки</li>
+ *     <li>cache.single-flight.coalesced - промахи, присоединившиеся к уже идущей загрузке</li>
+ * </ul>
+ */
+public class SingleFlight {
+
+    private final Map<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final Counter loads;
+    private final Counter coalesced;
+
+    public SingleFlight(String cacheName, MeterRegistry meterRegistry) {
+        this.loads = Counter.builder("cache.single-flight.loads")
+                .description("Cache loads executed after a miss")
+                .tag("cache", cacheName)
+                .register(meterRegistry);
+        this.coalesced = Counter.builder("cache.single-flight.coalesced")
+                .description("Cache misses served by a load already in flight")
+                .tag("cache", cacheName)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Каждый вызывающий получает свою копию результата, поэтому отмена подписки одним из них
+     * не отменяет загрузку для остальных
+     */
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> execute(String key, Supplier<CompletableFuture<T>> loader) {
+        CompletableFuture<Object> promise = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(key, promise);
+        if (existing != null) {
+            coalesced.increment();
+            return (CompletableFuture<T>) existing.copy();
+        }
+
+        loads.increment();
+        try {
+            loader.get().whenComplete((value, error) -> {
+                inFlight.remove(key, promise);
+                if (error != null) {
+                    promise.completeExceptionally(error);
+                } else {
+                    promise.complete(value);
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlight.remove(key, promise);
+            promise.completeExceptionally(e);
+        }
+        return (CompletableFuture<T>) promise.copy();
+    }
+}
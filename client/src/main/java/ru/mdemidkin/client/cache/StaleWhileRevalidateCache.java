@@ -0,0 +1,180 @@
+package ru.mdemidkin.client.cache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Режим stale-while-revalidate поверх {@link TwoLevelCache}. Значения хранятся в {@link CacheEnvelope}:
+ * <ul>
+ *     <li>до мягкого TTL значение отдается как есть;</li>
+ *     <li>после мягкого TTL отдается устаревшее значение, а загрузка запускается в фоне
+ *     на ограниченном планировщике, не больше одной на ключ;</li>
+ *     <li>после жесткого TTL (TTL записи в Redis) вызывающий ждет загрузку.</li>
+ * </ul>
+ * Фоновое обновление выполняется только для {@code @Cacheable(sync = true)}, где кешу передается загрузчик.
+ * Метрика cache.refreshes с тегом result: success, failure, rejected
+ */
+@Slf4j
+public class StaleWhileRevalidateCache implements Cache {
+
+    private final Cache delegate;
+    private final Duration softTimeToLive;
+    private final Scheduler refreshScheduler;
+    private final Clock clock;
+    private final MeterRegistry meterRegistry;
+    private final Set<Object> refreshing = ConcurrentHashMap.newKeySet();
+
+    public StaleWhileRevalidateCache(Cache delegate,
+                                     Duration softTimeToLive,
+                                     Scheduler refreshScheduler,
+                                     Clock clock,
+                                     MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.softTimeToLive = softTimeToLive;
+        this.refreshScheduler = refreshScheduler;
+        this.clock = clock;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return delegate.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        ValueWrapper wrapper = delegate.get(key);
+        return wrapper != null ? new SimpleValueWrapper(unwrap(wrapper.get())) : null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Class<T> type) {
+        ValueWrapper wrapper = get(key);
+        Object value = wrapper != null ? wrapper.get() : null;
+        if (value != null && type != null && !type.isInstance(value)) {
+            throw new IllegalStateException("Cached value is not of required type [" + type.getName() + "]: " + value);
+        }
+        return (T) value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        return (T) unwrap(delegate.get(key, () -> wrap(valueLoader.call())));
+    }
+
+    @Override
+    public CompletableFuture<?> retrieve(Object key) {
+        CompletableFuture<?> future = delegate.retrieve(key);
+        if (future == null) {
+            return null;
+        }
+        return future.thenApply(result -> result instanceof ValueWrapper wrapper
+                ? new SimpleValueWrapper(unwrap(wrapper.get()))
+                : unwrap(result));
+    }
+
+    /**
+     * Один вызов {@link TwoLevelCache#retrieve(Object, Supplier)}: промах загружается с объединением
+     * одновременных загрузок, а по найденному конверту решаем, нужно ли обновление в фоне
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> retrieve(Object key, Supplier<CompletableFuture<T>> valueLoader) {
+        AtomicBoolean loaded = new AtomicBoolean();
+        return delegate.<Object>retrieve(key, () -> {
+                    loaded.set(true);
+                    return valueLoader.get().<Object>thenApply(this::wrap);
+                })
+                .thenApply(stored -> {
+                    if (!loaded.get() && stored instanceof CacheEnvelope envelope && envelope.isStale(clock.millis())) {
+                        refreshInBackground(key, valueLoader);
+                    }
+                    return (T) unwrap(stored);
+                });
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        delegate.put(key, wrap(value));
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        ValueWrapper existing = delegate.putIfAbsent(key, wrap(value));
+        return existing != null ? new SimpleValueWrapper(unwrap(existing.get())) : null;
+    }
+
+    @Override
+    public void evict(Object key) {
+        delegate.evict(key);
+    }
+
+    @Override
+    public boolean evictIfPresent(Object key) {
+        return delegate.evictIfPresent(key);
+    }
+
+    @Override
+    public void clear() {
+        delegate.clear();
+    }
+
+    /**
+     * Загрузчик вызывается на потоке планировщика, а не на потоке запроса: медленная загрузка не задерживает
+     * ответ, а переполненная очередь планировщика отклоняет обновление (result=rejected)
+     */
+    private <T> void refreshInBackground(Object key, Supplier<CompletableFuture<T>> valueLoader) {
+        if (!refreshing.add(key)) {
+            return;
+        }
+        try {
+            Mono.defer(() -> Mono.fromFuture(valueLoader.get()))
+                    .subscribeOn(refreshScheduler)
+                    .doOnNext(value -> put(key, value))
+                    .doFinally(signal -> refreshing.remove(key))
+                    .subscribe(
+                            value -> countRefresh("success"),
+                            error -> {
+                                countRefresh(error instanceof RejectedExecutionException ? "rejected" : "failure");
+                                log.warn("Failed to refresh cache {} key {}", getName(), key, error);
+                            });
+        } catch (RuntimeException e) {
+            refreshing.remove(key);
+            countRefresh("rejected");
+            log.warn("Cache refresh for {} key {} rejected", getName(), key, e);
+        }
+    }
+
+    private void countRefresh(String result) {
+        meterRegistry.counter("cache.refreshes", "cache", getName(), "result", result).increment();
+    }
+
+    private CacheEnvelope wrap(Object value) {
+        return new CacheEnvelope(value, clock.millis() + softTimeToLive.toMillis());
+    }
+
+    private Object unwrap(Object stored) {
+        return stored instanceof CacheEnvelope envelope ? envelope.getValue() : stored;
+    }
+}
@@ -0,0 +1,226 @@
+package ru.mdemidkin.client.cache;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.NullValue;
+import org.springframework.cache.support.SimpleValueWrapper;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Двухуровневый кеш: L1 в памяти процесса (Caffeine, W-TinyLFU) перед общим кешем в Redis (L2).
+ * Попадание в L1 обслуживается без сетевого запроса и десериализации.
+ * Любое изменение записи рассылается остальным узлам, чтобы они сбросили свою копию в L1.
+ * <p>
+ * Загрузки по промаху для {@code @Cacheable(sync = true)} объединяются через {@link SingleFlight},
+ * а при заданном {@link RedisLoadLock} - и между узлами.
+ * Попадания и промахи считаются в {@link CacheMetrics}: промах, присоединившийся к уже идущей загрузке,
+ * учитывается только в cache.single-flight.coalesced
+ */
+public class TwoLevelCache implements Cache {
+
+    private final String name;
+    private final com.github.benmanes.caffeine.cache.Cache<String, Object> local;
+    private final Cache remote;
+    private final CacheInvalidationBus invalidationBus;
+    private final SingleFlight singleFlight;
+    private final RedisLoadLock loadLock;
+    private final CacheMetrics metrics;
+
+    public TwoLevelCache(String name,
+                         com.github.benmanes.caffeine.cache.Cache<String, Object> local,
+                         Cache remote,
+                         CacheInvalidationBus invalidationBus,
+                         SingleFlight singleFlight,
+                         RedisLoadLock loadLock,
+                         CacheMetrics metrics) {
+        this.name = name;
+        this.local = local;
+        this.remote = remote;
+        this.invalidationBus = invalidationBus;
+        this.singleFlight = singleFlight;
+        this.loadLock = loadLock;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return remote.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        String localKey = localKey(key);
+        Object value = local.getIfPresent(localKey);
+        if (value != null) {
+            metrics.localHit();
+            return new SimpleValueWrapper(fromStoreValue(value));
+        }
+        ValueWrapper wrapper = remote.get(key);
+        if (wrapper != null) {
+            metrics.remoteHit();
+            local.put(localKey, toStoreValue(wrapper.get()));
+        } else {
+            metrics.miss();
+        }
+        return wrapper;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Class<T> type) {
+        ValueWrapper wrapper = get(key);
+        Object value = wrapper != null ? wrapper.get() : null;
+        if (value != null && type != null && !type.isInstance(value)) {
+            throw new IllegalStateException("Cached value is not of required type [" + type.getName() + "]: " + value);
+        }
+        return (T) value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        String localKey = localKey(key);
+        Object value = local.getIfPresent(localKey);
+        if (value != null) {
+            metrics.localHit();
+            return (T) fromStoreValue(value);
+        }
+        AtomicBoolean loaded = new AtomicBoolean();
+        T result = remote.get(key, () -> {
+            loaded.set(true);
+            metrics.miss();
+            return valueLoader.call();
+        });
+        if (!loaded.get()) {
+            metrics.remoteHit();
+        }
+        local.put(localKey, toStoreValue(result));
+        return result;
+    }
+
+    @Override
+    public CompletableFuture<?> retrieve(Object key) {
+        String localKey = localKey(key);
+        Object value = local.getIfPresent(localKey);
+        if (value != null) {
+            metrics.localHit();
+            return CompletableFuture.completedFuture(new SimpleValueWrapper(fromStoreValue(value)));
+        }
+        CompletableFuture<?> future = remote.retrieve(key);
+        if (future == null) {
+            return null;
+        }
+        return future.thenApply(result -> {
+            if (result instanceof ValueWrapper wrapper) {
+                metrics.remoteHit();
+                local.put(localKey, toStoreValue(wrapper.get()));
+            } else if (result != null) {
+                metrics.remoteHit();
+                local.put(localKey, result);
+            } else {
+                metrics.miss();
+            }
+            return result;
+        });
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> retrieve(Object key, Supplier<CompletableFuture<T>> valueLoader) {
+        String localKey = localKey(key);
+        Object value = local.getIfPresent(localKey);
+        if (value != null) {
+            metrics.localHit();
+            return CompletableFuture.completedFuture((T) fromStoreValue(value));
+        }
+        return singleFlight.execute(localKey, () -> {
+            AtomicBoolean loaded = new AtomicBoolean();
+            Supplier<CompletableFuture<T>> timedLoader = metrics.timedLoader(valueLoader);
+            return loadRemote(key, localKey, () -> {
+                loaded.set(true);
+                return timedLoader.get();
+            }).thenApply(result -> {
+                if (!loaded.get()) {
+                    metrics.remoteHit();
+                }
+                local.put(localKey, toStoreValue(result));
+                return result;
+            });
+        });
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        metrics.put();
+        String localKey = localKey(key);
+        remote.put(key, value);
+        local.put(localKey, toStoreValue(value));
+        invalidationBus.publishEvict(name, localKey);
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        String localKey = localKey(key);
+        ValueWrapper existing = remote.putIfAbsent(key, value);
+        local.invalidate(localKey);
+        invalidationBus.publishEvict(name, localKey);
+        return existing;
+    }
+
+    @Override
+    public void evict(Object key) {
+        metrics.evict();
+        String localKey = localKey(key);
+        remote.evict(key);
+        local.invalidate(localKey);
+        invalidationBus.publishEvict(name, localKey);
+    }
+
+    @Override
+    public void clear() {
+        remote.clear();
+        local.invalidateAll();
+        invalidationBus.publishClear(name);
+    }
+
+    /**
+     * Инвалидация, пришедшая с другого узла: трогаем только L1, Redis уже изменен отправителем
+     */
+    public void evictLocal(String localKey) {
+        local.invalidate(localKey);
+    }
+
+    public void clearLocal() {
+        local.invalidateAll();
+    }
+
+    private <T> CompletableFuture<T> loadRemote(Object key, String localKey,
+                                                Supplier<CompletableFuture<T>> valueLoader) {
+        if (loadLock == null) {
+            return remote.retrieve(key, valueLoader);
+        }
+        return loadLock.load(name + ":" + localKey,
+                () -> remote.retrieve(key),
+                () -> remote.retrieve(key, valueLoader));
+    }
+
+    private String localKey(Object key) {
+        return String.valueOf(key);
+    }
+
+    private Object toStoreValue(Object value) {
+        return value != null ? value : NullValue.INSTANCE;
+    }
+
+    private Object fromStoreValue(Object value) {
+        return value == NullValue.INSTANCE ? null : value;
+    }
+}
@@ -0,0 +1,113 @@
+package ru.mdemidkin.client.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import reactor.core.Disposable;
+import reactor.core.scheduler.Scheduler;
+import ru.mdemidkin.client.config.AppCacheProperties;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Оборачивает кеши Redis двухуровневыми кешами и применяет инвалидации, пришедшие с других узлов.
+ * Кеши с мягким TTL (app-cache.redis.caches.*.soft-time-to-live) дополнительно работают
+ * в режиме {@link StaleWhileRevalidateCache}. При выключенном L1 его размер нулевой,
+ * а объединение загрузок и stale-while-revalidate продолжают работать
+ */
+public class TwoLevelCacheManager implements CacheManager, InitializingBean, DisposableBean {
+
+    private final CacheManager remoteCacheManager;
+    private final AppCacheProperties properties;
+    private final CacheInvalidationBus invalidationBus;
+    private final MeterRegistry meterRegistry;
+    private final RedisLoadLock loadLock;
+    private final Scheduler refreshScheduler;
+    private final Map<String, TwoLevelCache> caches = new ConcurrentHashMap<>();
+    private final Map<String, Cache> exposedCaches = new ConcurrentHashMap<>();
+
+    private Disposable invalidationSubscription;
+
+    /**
+     * @param loadLock         блокировка загрузки между узлами, null - загрузки объединяются только внутри JVM
+     * @param refreshScheduler планировщик фонового обновления устаревших значений
+     */
+    public TwoLevelCacheManager(CacheManager remoteCacheManager,
+                                AppCacheProperties properties,
+                                CacheInvalidationBus invalidationBus,
+                                MeterRegistry meterRegistry,
+                                RedisLoadLock loadLock,
+                                Scheduler refreshScheduler) {
+        this.remoteCacheManager = remoteCacheManager;
+        this.properties = properties;
+        this.invalidationBus = invalidationBus;
+        this.meterRegistry = meterRegistry;
+        this.loadLock = loadLock;
+        this.refreshScheduler = refreshScheduler;
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        return exposedCaches.computeIfAbsent(name, this::createExposedCache);
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return remoteCacheManager.getCacheNames();
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        invalidationSubscription = invalidationBus.listen(this::onInvalidation);
+    }
+
+    @Override
+    public void destroy() {
+        if (invalidationSubscription != null) {
+            invalidationSubscription.dispose();
+        }
+    }
+
+    private Cache createExposedCache(String name) {
+        TwoLevelCache cache = caches.computeIfAbsent(name, this::createCache);
+        Duration softTimeToLive = properties.getRedis().softTimeToLive(name);
+        if (softTimeToLive == null) {
+            return cache;
+        }
+        return new StaleWhileRevalidateCache(cache, softTimeToLive, refreshScheduler,
+                Clock.systemUTC(), meterRegistry);
+    }
+
+    private TwoLevelCache createCache(String name) {
+        Cache remote = remoteCacheManager.getCache(name);
+        if (remote == null) {
+            throw new IllegalStateException("Remote cache " + name + " is not available");
+        }
+        AppCacheProperties.Local localProperties = properties.getLocal();
+        com.github.benmanes.caffeine.cache.Cache<String, Object> local = Caffeine.newBuilder()
+                .maximumSize(localProperties.isEnabled() ? localProperties.maximumSize(name) : 0)
+                .expireAfterWrite(localProperties.timeToLive(name))
+                .build();
+        return new TwoLevelCache(name, local, remote, invalidationBus,
+                new SingleFlight(name, meterRegistry), loadLock, new CacheMetrics(name, meterRegistry));
+    }
+
+    private void onInvalidation(CacheInvalidation invalidation) {
+        TwoLevelCache cache = caches.get(invalidation.cacheName());
+        if (cache == null) {
+            return;
+        }
+        if (invalidation.isClear()) {
+            cache.clearLocal();
+        } else {
+            cache.evictLocal(invalidation.key());
+        }
+    }
+}
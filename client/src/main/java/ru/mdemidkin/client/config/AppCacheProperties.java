@@ -0,0 +1,158 @@
+package ru.mdemidkin.client.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import ru.mdemidkin.client.cache.CacheCompression;
+import ru.mdemidkin.client.cache.CacheSerializationFormat;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "app-cache")
+public class AppCacheProperties {
+
+    private String invalidationChannel = "intershop:cache:invalidation";
+    private Duration generationSyncInterval = Duration.ofSeconds(5);
+    private Local local = new Local();
+    private Redis redis = new Redis();
+    private LoadLock loadLock = new LoadLock();
+    private Refresh refresh = new Refresh();
+    private Serialization serialization = new Serialization();
+    private ItemFilter itemFilter = new ItemFilter();
+    private WarmUp warmUp = new WarmUp();
+
+    /**
+     * Локальный (L1) кеш в памяти процесса перед Redis
+     */
+    @Getter
+    @Setter
+    public static class Local {
+        private boolean enabled = true;
+        private long maximumSize = 1000;
+        private Duration timeToLive = Duration.ofSeconds(30);
+        private Map<String, LocalCacheSpec> caches = new HashMap<>();
+
+        public long maximumSize(String cacheName) {
+            LocalCacheSpec spec = caches.get(cacheName);
+            return spec != null && spec.getMaximumSize() != null ? spec.getMaximumSize() : maximumSize;
+        }
+
+        public Duration timeToLive(String cacheName) {
+            LocalCacheSpec spec = caches.get(cacheName);
+            return spec != null && spec.getTimeToLive() != null ? spec.getTimeToLive() : timeToLive;
+        }
+    }
+
+    @Getter
+    @Setter
+    public static class LocalCacheSpec {
+        private Long maximumSize;
+        private Duration timeToLive;
+    }
+
+    /**
+     * Настройки кешей в Redis поверх spring.cache.redis
+     */
+    @Getter
+    @Setter
+    public static class Redis {
+        private Map<String, RedisCacheSpec> caches = new HashMap<>();
+
+        /**
+         * @return TTL кеша в Redis или defaultTimeToLive, если для кеша он не задан
+         */
+        public Duration timeToLive(String cacheName, Duration defaultTimeToLive) {
+            RedisCacheSpec spec = caches.get(cacheName);
+            return spec != null && spec.getTimeToLive() != null ? spec.getTimeToLive() : defaultTimeToLive;
+        }
+
+        /**
+         * @return мягкий TTL кеша или null, если stale-while-revalidate для него не включен
+         */
+        public Duration softTimeToLive(String cacheName) {
+            RedisCacheSpec spec = caches.get(cacheName);
+            return spec != null ? spec.getSoftTimeToLive() : null;
+        }
+    }
+
+    /**
+     * time-to-live - жесткий TTL записи в Redis, soft-time-to-live - срок, после которого значение
+     * отдается устаревшим и обновляется в фоне
+     */
+    @Getter
+    @Setter
+    public static class RedisCacheSpec {
+        private Duration timeToLive;
+        private Duration softTimeToLive;
+    }
+
+    /**
+     * Ограниченный планировщик фонового обновления устаревших значений
+     */
+    @Getter
+    @Setter
+    public static class Refresh {
+        private int threads = 4;
+        private int queueCapacity = 100;
+    }
+
+    /**
+     * Блокировка загрузки по промаху между узлами (@Cacheable(sync = true))
+     */
+    @Getter
+    @Setter
+    public static class LoadLock {
+        private boolean enabled = false;
+        private Duration lockTtl = Duration.ofSeconds(5);
+        private Duration waitTimeout = Duration.ofSeconds(3);
+        private Duration pollInterval = Duration.ofMillis(50);
+    }
+
+    /**
+     * Формат значений в Redis (кеши и reactiveRedisTemplate)
+     */
+    @Getter
+    @Setter
+    public static class Serialization {
+        private CacheSerializationFormat format = CacheSerializationFormat.BINARY;
+        private CacheCompression compression = CacheCompression.LZ4;
+        private DataSize compressionThreshold = DataSize.ofKilobytes(1);
+    }
+
+    /**
+     * Фильтр Блума по id товаров: запросы id, которых точно нет, отклоняются без обращения к Redis и БД.
+     * expected-insertions - минимальный размер фильтра, при перестроении он растет вместе с каталогом.
+     * rebuild-interval - период полного перестроения на случай потерянного сообщения о новом товаре
+     */
+    @Getter
+    @Setter
+    public static class ItemFilter {
+        private boolean enabled = true;
+        private int expectedInsertions = 10_000;
+        private double falsePositiveProbability = 0.01;
+        private Duration rebuildInterval = Duration.ofMinutes(5);
+    }
+
+    /**
+     * Прогрев кешей каталога при старте: первые pages страниц каждой сортировки без поиска
+     * и top-items товаров, чаще всего заказанных за recent-orders-window
+     */
+    @Getter
+    @Setter
+    public static class WarmUp {
+        private boolean enabled = true;
+        private int pages = 3;
+        private int pageSize = 10;
+        private int topItems = 50;
+        private Duration recentOrdersWindow = Duration.ofDays(7);
+        private int concurrency = 4;
+        private Duration timeout = Duration.ofSeconds(30);
+    }
+}
@@ -0,0 +1,47 @@
+package ru.mdemidkin.client.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "app-cart")
+public class AppCartProperties {
+
+    /**
+     * Хранилище корзины: database, redis или write-behind
+     */
+    private String store = "database";
+
+    /**
+     * Время жизни корзины в Redis после последнего изменения, чтобы корзины истекших сессий не копились
+     */
+    private Duration timeToLive = Duration.ofDays(1);
+
+    private WriteBehind writeBehind = new WriteBehind();
+
+    /**
+     * Отложенная запись корзин из Redis в cart_items
+     */
+    @Getter
+    @Setter
+    public static class WriteBehind {
+        /**
+         * Период сброса измененных корзин в БД
+         */
+        private Duration flushInterval = Duration.ofSeconds(5);
+        /**
+         * Сколько корзин записывается одним запросом. Столько изменений на узле запускают сброс, не дожидаясь периода
+         */
+        private int batchSize = 100;
+        /**
+         * Время жизни блокировки сброса: сбрасывает один узел кластера, блокировка упавшего узла истекает сама
+         */
+        private Duration lockTtl = Duration.ofSeconds(30);
+    }
+}
@@ -0,0 +1,15 @@
+package ru.mdemidkin.client.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import ru.mdemidkin.client.model.enums.SearchMode;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "catalog-search")
+public class CatalogSearchProperties {
+    private SearchMode mode = SearchMode.FULL_TEXT;
+}
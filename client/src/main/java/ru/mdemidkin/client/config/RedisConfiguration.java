@@ -4,17 +4,26 @@ import com.fasterxml.jackson.annotation.JsonTypeInfo;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.jsontype.impl.LaissezFaireSubTypeValidator;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.boot.autoconfigure.cache.RedisCacheManagerBuilderCustomizer;
+import org.springframework.cache.CacheManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.data.redis.cache.RedisCacheConfiguration;
 import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
 import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import ru.mdemidkin.client.cache.BinaryCacheSerializer;
+import ru.mdemidkin.client.cache.CacheInvalidationBus;
+import ru.mdemidkin.client.cache.ReactiveRedisCacheManager;
+import ru.mdemidkin.client.cache.RedisLoadLock;
+import ru.mdemidkin.client.cache.TwoLevelCacheManager;
 
 import java.time.Duration;
 
@@ -34,15 +43,27 @@ public class RedisConfiguration {
         return mapper;
     }
 
+    /**
+     * Сериализатор значений Redis, формат выбирается в app-cache.serialization.
+     * JSON остается резервным форматом для незарегистрированных типов и ранее записанных значений
+     */
     @Bean
-    public GenericJackson2JsonRedisSerializer redisSerializer(ObjectMapper objectMapper) {
-        return new GenericJackson2JsonRedisSerializer(objectMapper);
+    public RedisSerializer<Object> redisSerializer(ObjectMapper objectMapper, AppCacheProperties cacheProperties) {
+        GenericJackson2JsonRedisSerializer jsonSerializer = new GenericJackson2JsonRedisSerializer(objectMapper);
+        AppCacheProperties.Serialization serialization = cacheProperties.getSerialization();
+        return switch (serialization.getFormat()) {
+            case JSON -> jsonSerializer;
+            case BINARY -> BinaryCacheSerializer.create(
+                    jsonSerializer,
+                    serialization.getCompression(),
+                    Math.toIntExact(serialization.getCompressionThreshold().toBytes()));
+        };
     }
 
     @Bean
     public ReactiveRedisTemplate<String, Object> reactiveRedisTemplate(
             ReactiveRedisConnectionFactory factory,
-            GenericJackson2JsonRedisSerializer redisSerializer) {
+            RedisSerializer<Object> redisSerializer) {
 
         RedisSerializationContext<String, Object> context = RedisSerializationContext
                 .<String, Object>newSerializationContext(new StringRedisSerializer())
@@ -55,16 +76,32 @@ public class RedisConfiguration {
         return new ReactiveRedisTemplate<>(factory, context);
     }
 
+    /**
+     * Неблокирующие кеши Redis с локальным L1 кешем перед ними, объединением одновременных загрузок
+     * по промаху и метриками {@link ru.mdemidkin.client.cache.CacheMetrics}
+     */
     @Bean
-    public RedisCacheManagerBuilderCustomizer cacheManagerCustomizer(
-            GenericJackson2JsonRedisSerializer redisSerializer,
-            @Value("${spring.cache.redis.time-to-live}") Long ttl) {
-        return builder -> builder
-                .cacheDefaults(
-                        RedisCacheConfiguration.defaultCacheConfig()
-                                .entryTtl(Duration.ofMillis(ttl))
-                                .serializeValuesWith(
-                                        RedisSerializationContext.SerializationPair
-                                                .fromSerializer(redisSerializer)));
+    public CacheManager cacheManager(ReactiveRedisConnectionFactory connectionFactory,
+                                     RedisSerializer<Object> redisSerializer,
+                                     @Value("${spring.cache.redis.time-to-live}") Long ttl,
+                                     AppCacheProperties cacheProperties,
+                                     CacheInvalidationBus invalidationBus,
+                                     MeterRegistry meterRegistry,
+                                     ReactiveStringRedisTemplate stringRedisTemplate,
+                                     Scheduler cacheRefreshScheduler) {
+        ReactiveRedisCacheManager redisCacheManager = new ReactiveRedisCacheManager(connectionFactory,
+                redisSerializer, Duration.ofMillis(ttl), cacheProperties.getRedis(), meterRegistry);
+
+        RedisLoadLock loadLock = cacheProperties.getLoadLock().isEnabled()
+                ? new RedisLoadLock(stringRedisTemplate, cacheProperties.getLoadLock())
+                : null;
+        return new TwoLevelCacheManager(redisCacheManager, cacheProperties, invalidationBus,
+                meterRegistry, loadLock, cacheRefreshScheduler);
+    }
+
+    @Bean(destroyMethod = "dispose")
+    public Scheduler cacheRefreshScheduler(AppCacheProperties cacheProperties) {
+        AppCacheProperties.Refresh refresh = cacheProperties.getRefresh();
+        return Schedulers.newBoundedElastic(refresh.getThreads(), refresh.getQueueCapacity(), "cache-refresh");
     }
-}
\ No newline at end of file
+}
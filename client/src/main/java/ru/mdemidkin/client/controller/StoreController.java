@@ -1,25 +1,55 @@
 package ru.mdemidkin.client.controller;
 
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.server.ResponseStatusException;
 import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebSession;
+import org.springframework.web.util.UriComponentsBuilder;
+import org.thymeleaf.spring6.context.webflux.ReactiveDataDriverContextVariable;
 import reactor.core.publisher.Mono;
+import ru.mdemidkin.client.dto.CartItemActionDto;
 import ru.mdemidkin.client.dto.CartItemListDto;
+import ru.mdemidkin.client.dto.ItemsSortedSearchPageDto;
+import ru.mdemidkin.client.model.Item;
 import ru.mdemidkin.client.model.enums.ItemAction;
 import ru.mdemidkin.client.model.enums.SortType;
+import ru.mdemidkin.client.service.InsufficientStockException;
 import ru.mdemidkin.client.service.ItemService;
 import ru.mdemidkin.client.service.OrderService;
 import ru.mdemidkin.client.service.PaymentService;
 
+import java.util.List;
+
+@Slf4j
 @Controller
 @RequiredArgsConstructor
 public class StoreController {
 
+    private static final int MAX_BATCH_ACTIONS = 100;
+
+    /**
+     * Размеры страницы из выпадающего списка каталога, другие значения сводятся к ближайшему меньшему.
+     * История заказов ограничивается тем же набором: страница кешируется целиком одним значением
+     */
+    private static final List<Integer> PAGE_SIZES = List.of(5, 10, 20, 50, 100);
+
+    /**
+     * Нажатия кнопок корзины, отправленные скриптом cart.js. Без этого заголовка (скрипт отключен или
+     * не загрузился) те же формы обрабатываются обычным POST с редиректом на страницу
+     */
+    private static final String FRAGMENT_REQUEST = "X-Requested-With=fetch";
+
     private final ItemService itemService;
     private final OrderService orderService;
     private final PaymentService paymentService;
@@ -29,35 +59,67 @@ public class StoreController {
         return Mono.just("redirect:/main/items");
     }
 
+    /**
+     * Страницы каталога после первой листаются по курсору из ссылок "&lt;"/"&gt;". Номер страницы без курсора
+     * (старая закладка, ручной ввод) перенаправляется на первую страницу, чтобы не читать каталог через OFFSET.
+     * Через OFFSET листается только выдача полнотекстового поиска без сортировки, у которой курсора нет
+     */
     @GetMapping("/main/items")
     public Mono<String> getItems(@RequestParam(defaultValue = "") String search,
                                  @RequestParam(defaultValue = "NO") SortType sort,
                                  @RequestParam(defaultValue = "1") int pageNumber,
                                  @RequestParam(defaultValue = "10") int pageSize,
+                                 @RequestParam(required = false) String after,
+                                 @RequestParam(required = false) String before,
+                                 WebSession session,
                                  Model model) {
-        return itemService.searchItems(search, sort, pageNumber, pageSize)
+        String sessionId = cartSession(session);
+        int size = pageSize(pageSize);
+        boolean keyset = itemService.supportsKeyset(search, sort);
+        if (keyset && pageNumber > 1 && after == null && before == null) {
+            return Mono.just("redirect:" + firstPage(search, sort, size));
+        }
+        Mono<ItemsSortedSearchPageDto> page = keyset
+                ? itemService.searchItemsByCursor(sessionId, search, sort, pageNumber, size, after, before)
+                : itemService.searchItems(sessionId, search, sort, pageNumber, size);
+        return page
+                .zipWith(itemService.getCartItemListDto(sessionId))
                 .map(result -> {
-                    model.addAttribute("items", result.itemsTile());
-                    model.addAttribute("search", result.search());
-                    model.addAttribute("sort", result.sortType());
-                    model.addAttribute("paging", result.responsePagingDto());
+                    model.addAttribute("items", result.getT1().itemsTile());
+                    model.addAttribute("search", result.getT1().search());
+                    model.addAttribute("sort", result.getT1().sortType());
+                    model.addAttribute("paging", result.getT1().responsePagingDto());
+                    model.addAttribute("cartCount", result.getT2().unitsCount());
                     return "main";
                 });
     }
 
     @PostMapping("/main/items/{id}")
     public Mono<String> modifyItemInCart(@PathVariable Long id,
-                                         ServerWebExchange exchange) {
+                                         ServerWebExchange exchange,
+                                         WebSession session) {
         return exchange.getFormData()
                 .map(data -> data.getFirst("action"))
                 .map(ItemAction::valueOf)
-                .flatMap(action -> itemService.updateCartItem(id, action))
+                .flatMap(action -> itemService.updateCartItem(cartSession(session), id, action))
                 .then(Mono.just("redirect:/main/items"));
     }
 
+    /**
+     * Нажатие "+"/"-" в каталоге без перезагрузки страницы: в ответе только счетчик товара и корзины,
+     * поэтому каталог не ищется заново, а параметры поиска и страницы в браузере сохраняются
+     */
+    @PostMapping(value = "/main/items/{id}", headers = FRAGMENT_REQUEST)
+    public Mono<String> modifyItemInCartFragment(@PathVariable Long id,
+                                                 ServerWebExchange exchange,
+                                                 WebSession session,
+                                                 Model model) {
+        return itemFragment("main", id, exchange, session, model);
+    }
+
     @GetMapping("/cart/items")
-    public Mono<String> getCartItems(Model model) {
-        return itemService.getCartItemListDto()
+    public Mono<String> getCartItems(WebSession session, Model model) {
+        return itemService.getCartItemListDto(cartSession(session))
                 .map(dto -> {
                     model.addAttribute("items", dto.items());
                     model.addAttribute("total", dto.cartTotal());
@@ -68,60 +130,126 @@ public class StoreController {
 
     @PostMapping("/cart/items/{id}")
     public Mono<String> modifyCartItem(@PathVariable Long id,
-                                       ServerWebExchange exchange) {
+                                       ServerWebExchange exchange,
+                                       WebSession session) {
         return exchange.getFormData()
                 .map(data -> data.getFirst("action"))
                 .map(ItemAction::valueOf)
-                .flatMap(action -> itemService.updateCartItem(id, action))
+                .flatMap(action -> itemService.updateCartItem(cartSession(session), id, action))
                 .then(Mono.just("redirect:/cart/items"));
     }
 
+    /**
+     * Изменение строки корзины без перезагрузки страницы: в ответе строка товара (пустая, если товар убран)
+     * и итог корзины
+     */
+    @PostMapping(value = "/cart/items/{id}", headers = FRAGMENT_REQUEST)
+    public Mono<String> modifyCartItemFragment(@PathVariable Long id,
+                                               ServerWebExchange exchange,
+                                               WebSession session,
+                                               Model model) {
+        return updateCartItem(id, exchange, session)
+                .map(dto -> {
+                    Item item = dto.findItem(id);
+                    model.addAttribute("page", "cart");
+                    model.addAttribute("items", item.getCount() > 0 ? List.of(item) : List.of());
+                    model.addAttribute("total", dto.cartTotal());
+                    model.addAttribute("empty", dto.isCartEmpty());
+                    return "cart-update";
+                });
+    }
+
+    /**
+     * Пакетное изменение корзины для API-клиентов и массового редактирования: список пар (itemId, action)
+     * применяется одним запросом вместо POST и перерисовки страницы на каждую строку
+     *
+     * @return корзина после изменения
+     */
+    @PostMapping(value = "/cart/items", consumes = MediaType.APPLICATION_JSON_VALUE,
+            produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseBody
+    public Mono<CartItemListDto> modifyCartItems(@RequestBody List<CartItemActionDto> actions,
+                                                 WebSession session) {
+        if (actions.size() > MAX_BATCH_ACTIONS
+                || actions.stream().anyMatch(action -> action == null || action.itemId() == null || action.action() == null)) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST));
+        }
+        return itemService.updateCartItems(cartSession(session), actions);
+    }
+
     @GetMapping("/items/{id}")
-    public Mono<String> getItem(@PathVariable Long id, Model model) {
-        return itemService.getById(id)
-                .map(item -> {
-                    model.addAttribute("item", item);
+    public Mono<String> getItem(@PathVariable Long id, WebSession session, Model model) {
+        String sessionId = cartSession(session);
+        return itemService.getById(sessionId, id)
+                .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND)))
+                .zipWith(itemService.getCartItemListDto(sessionId))
+                .map(result -> {
+                    model.addAttribute("item", result.getT1());
+                    model.addAttribute("cartCount", result.getT2().unitsCount());
                     return "item";
                 });
     }
 
     @PostMapping("/items/{id}")
     public Mono<String> modifyItemFromCard(@PathVariable Long id,
-                                           ServerWebExchange exchange) {
+                                           ServerWebExchange exchange,
+                                           WebSession session) {
         return exchange.getFormData()
                 .map(data -> data.getFirst("action"))
                 .map(ItemAction::valueOf)
-                .flatMap(action -> itemService.updateCartItem(id, action))
+                .flatMap(action -> itemService.updateCartItem(cartSession(session), id, action))
                 .then(Mono.just("redirect:/items/" + id));
     }
 
+    @PostMapping(value = "/items/{id}", headers = FRAGMENT_REQUEST)
+    public Mono<String> modifyItemFromCardFragment(@PathVariable Long id,
+                                                   ServerWebExchange exchange,
+                                                   WebSession session,
+                                                   Model model) {
+        return itemFragment("item", id, exchange, session, model);
+    }
+
+    /**
+     * Остаток резервируется до оплаты и возвращается на склад, если заказ не оформлен: оплата упала,
+     * отклонена или заказ не сохранился уже после списания денег. В последнем случае платеж остается
+     * в логе для ручного возврата
+     */
     @PostMapping("/buy")
-    public Mono<String> buyItems(Model model) {
-        return itemService.getCartItemListDto()
-                .map(CartItemListDto::items)
-                .flatMap(items -> {
-                    double totalPrice = orderService.calculateTotalPrice(items);
-                    return paymentService.processOrderPayment(totalPrice)
-                            .flatMap(paymentSuccess -> {
-                                if (paymentSuccess) {
-                                    return orderService.createOrder()
-                                            .map(order -> "redirect:/orders/" + order.getId() + "?newOrder=true");
-                                } else {
-                                    model.addAttribute("error", "Не достаточно средств");
-                                    return Mono.just("error");
-                                }
-                            });
+    public Mono<String> buyItems(WebSession session, Model model) {
+        String sessionId = cartSession(session);
+        return orderService.reserveCart(sessionId)
+                .flatMap(items -> paymentService.processOrderPayment(orderService.calculateTotalPrice(items))
+                        .onErrorResume(error -> orderService.releaseStock(items).then(Mono.error(error)))
+                        .flatMap(paymentSuccess -> {
+                            if (paymentSuccess) {
+                                return orderService.createOrder(sessionId, items)
+                                        .onErrorResume(error -> {
+                                            log.error("Order of session {} failed after payment of {} was taken",
+                                                    sessionId, orderService.calculateTotalPrice(items), error);
+                                            return orderService.releaseStock(items).then(Mono.error(error));
+                                        })
+                                        .map(order -> "redirect:/orders/" + order.getId() + "?newOrder=true");
+                            } else {
+                                model.addAttribute("error", "Не достаточно средств");
+                                return orderService.releaseStock(items).thenReturn("error");
+                            }
+                        }))
+                .onErrorResume(InsufficientStockException.class, e -> {
+                    model.addAttribute("error", "Недостаточно товара на складе");
+                    return Mono.just("error");
                 });
     }
 
     @GetMapping("/orders")
-    public Mono<String> getOrders(Model model) {
-        return orderService.findAll()
-                .collectList()
-                .map(orders -> {
-                    model.addAttribute("orders", orders);
-                    return "orders";
-                });
+    public Mono<String> getOrders(@RequestParam(required = false) String before,
+                                  @RequestParam(defaultValue = "10") int pageSize,
+                                  Model model) {
+        int size = pageSize(pageSize);
+        model.addAttribute("orders",
+                new ReactiveDataDriverContextVariable(orderService.findAll(before, size), 1));
+        model.addAttribute("nextCursor", orderService.findNextCursor(before, size));
+        model.addAttribute("pageSize", size);
+        return Mono.just("orders");
     }
 
     @GetMapping("/orders/{id}")
@@ -135,4 +263,57 @@ public class StoreController {
                     return "order";
                 });
     }
+
+    /**
+     * Счетчик товара на странице page и счетчик корзины в шапке
+     */
+    private Mono<String> itemFragment(String page, Long id, ServerWebExchange exchange, WebSession session,
+                                      Model model) {
+        return updateCartItem(id, exchange, session)
+                .map(dto -> {
+                    model.addAttribute("page", page);
+                    model.addAttribute("item", dto.findItem(id));
+                    model.addAttribute("cartCount", dto.unitsCount());
+                    return "cart-update";
+                });
+    }
+
+    /**
+     * То же атомарное изменение, что и при обычном POST, после него - корзина для счетчиков. Фрагментные
+     * обработчики отличаются от обычных только отображением результата
+     */
+    private Mono<CartItemListDto> updateCartItem(Long id, ServerWebExchange exchange, WebSession session) {
+        String sessionId = cartSession(session);
+        return exchange.getFormData()
+                .map(data -> data.getFirst("action"))
+                .map(ItemAction::valueOf)
+                .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST)))
+                .flatMap(action -> itemService.updateCartItem(sessionId, id, action))
+                .then(Mono.defer(() -> itemService.getCartItemListDto(sessionId)));
+    }
+
+    /**
+     * Id сессии, к которой привязана корзина. Сессия запускается явно, иначе она не сохраняется
+     * и следующий запрос получит новую пустую корзину
+     */
+    private static String cartSession(WebSession session) {
+        session.start();
+        return session.getId();
+    }
+
+    private static int pageSize(int requested) {
+        return PAGE_SIZES.stream()
+                .filter(size -> size <= requested)
+                .reduce((smaller, larger) -> larger)
+                .orElse(PAGE_SIZES.get(0));
+    }
+
+    private static String firstPage(String search, SortType sort, int pageSize) {
+        return UriComponentsBuilder.fromPath("/main/items")
+                .queryParam("search", search)
+                .queryParam("sort", sort)
+                .queryParam("pageSize", pageSize)
+                .encode()
+                .toUriString();
+    }
 }
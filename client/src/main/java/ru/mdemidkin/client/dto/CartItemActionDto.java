@@ -0,0 +1,12 @@
+package ru.mdemidkin.client.dto;
+
+import ru.mdemidkin.client.model.enums.ItemAction;
+
+/**
+ * Действие над одной строкой корзины в пакетном изменении
+ */
+public record CartItemActionDto(
+        Long itemId,
+        ItemAction action
+) {
+}
@@ -9,4 +9,23 @@ public record CartItemListDto(
         Double cartTotal,
         boolean isCartEmpty
 ) {
+
+    /**
+     * Число единиц товара в корзине для счетчика в шапке страниц
+     */
+    public int unitsCount() {
+        return items.stream()
+                .mapToInt(Item::getCount)
+                .sum();
+    }
+
+    /**
+     * Строка корзины с товаром или товар с нулевым количеством, если его в корзине нет
+     */
+    public Item findItem(Long itemId) {
+        return items.stream()
+                .filter(item -> item.getId().equals(itemId))
+                .findFirst()
+                .orElseGet(() -> Item.builder().id(itemId).count(0).build());
+    }
 }
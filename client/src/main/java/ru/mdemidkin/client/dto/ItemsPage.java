@@ -0,0 +1,11 @@
+package ru.mdemidkin.client.dto;
+
+import ru.mdemidkin.client.model.Item;
+
+import java.util.List;
+
+public record ItemsPage(
+        List<Item> items,
+        long totalCount
+) {
+}
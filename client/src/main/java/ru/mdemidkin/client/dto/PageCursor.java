@@ -0,0 +1,58 @@
+package ru.mdemidkin.client.dto;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Позиция в keyset-пагинации: значение ключа сортировки и id последней записи.
+ * Наружу отдается в виде непрозрачной base64url-строки
+ */
+public record PageCursor(
+        String key,
+        Long id
+) {
+
+    private static final String SEPARATOR = ":";
+
+    public static PageCursor of(Object key, Long id) {
+        return new PageCursor(String.valueOf(key), id);
+    }
+
+    /**
+     * @return курсор или null, если строка пустая или повреждена
+     */
+    public static PageCursor decode(String token) {
+        if (token == null || token.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(SEPARATOR);
+            if (separator < 0) {
+                return null;
+            }
+            return new PageCursor(raw.substring(separator + 1), Long.valueOf(raw.substring(0, separator)));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    public String encode() {
+        String raw = id + SEPARATOR + key;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public boolean isNumeric() {
+        try {
+            numericKey();
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    public BigDecimal numericKey() {
+        return new BigDecimal(key);
+    }
+}
@@ -4,6 +4,12 @@ public record PagingDto(
         int pageNumber,
         int pageSize,
         boolean hasNext,
-        boolean hasPrevious
+        boolean hasPrevious,
+        String nextCursor,
+        String previousCursor
 ) {
+
+    public PagingDto(int pageNumber, int pageSize, boolean hasNext, boolean hasPrevious) {
+        this(pageNumber, pageSize, hasNext, hasPrevious, null, null);
+    }
 }
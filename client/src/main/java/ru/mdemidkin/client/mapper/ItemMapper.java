@@ -2,7 +2,6 @@ package ru.mdemidkin.client.mapper;
 
 import org.springframework.stereotype.Component;
 import ru.mdemidkin.client.model.Item;
-import ru.mdemidkin.client.model.OrderItem;
 
 import java.math.BigDecimal;
 import java.util.Map;
@@ -18,13 +17,8 @@ public class ItemMapper {
                 .imgPath((String) row.get("img_path"))
                 .price(((BigDecimal) row.get("price")).doubleValue())
                 .stockCount((Integer) row.get("stock_count"))
-                .count((Integer) row.get("count"))
+                .count(row.get("count") == null ? 0 : ((Number) row.get("count")).intValue())
                 .build();
     }
 
-    public Item toItem(Item item, OrderItem orderItem) {
-        item.setCount(orderItem.getQuantity());
-        return item;
-    }
-
 }
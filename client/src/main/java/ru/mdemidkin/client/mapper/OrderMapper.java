@@ -1,14 +1,22 @@
 package ru.mdemidkin.client.mapper;
 
+import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
 import ru.mdemidkin.client.dto.OrderDto;
 import ru.mdemidkin.client.model.Item;
 import ru.mdemidkin.client.model.Order;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 
 @Component
+@RequiredArgsConstructor
 public class OrderMapper {
+
+    private final ItemMapper itemMapper;
+
     public OrderDto toDto(Order order, List<Item> items) {
         return new OrderDto(
                 order.getId(),
@@ -17,4 +25,17 @@ public class OrderMapper {
                 items
         );
     }
+
+    /**
+     * @param rows строки join-запроса одного заказа, по строке на товар
+     */
+    public OrderDto toDto(List<Map<String, Object>> rows) {
+        Map<String, Object> first = rows.get(0);
+        return new OrderDto(
+                (Long) first.get("order_id"),
+                (LocalDateTime) first.get("created_at"),
+                ((BigDecimal) first.get("total_price")).doubleValue(),
+                rows.stream().map(itemMapper::toItem).toList()
+        );
+    }
 }
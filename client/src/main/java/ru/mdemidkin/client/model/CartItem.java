@@ -23,6 +23,9 @@ public class CartItem {
     @EqualsAndHashCode.Include
     private Long id;
 
+    @Column("session_id")
+    private String sessionId;
+
     @Column("item_id")
     private Long itemId;
 
@@ -0,0 +1,6 @@
+package ru.mdemidkin.client.model.enums;
+
+public enum SearchMode {
+    LIKE,
+    FULL_TEXT
+}
@@ -1,12 +1,130 @@
 package ru.mdemidkin.client.repository;
 
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.r2dbc.repository.R2dbcRepository;
 import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import ru.mdemidkin.client.model.CartItem;
 
+import java.util.Collection;
+
+/**
+ * Строки корзин всех сессий. Каждый запрос ограничен одной сессией, поэтому корзины разных
+ * покупателей не блокируют друг друга
+ */
 @Repository
 public interface CartRepository extends R2dbcRepository<CartItem, Long> {
 
-    Mono<CartItem> findByItemId(Long itemId);
+    Mono<CartItem> findBySessionIdAndItemId(String sessionId, Long itemId);
+
+    Flux<CartItem> findAllBySessionId(String sessionId);
+
+    Flux<CartItem> findAllBySessionIdAndItemIdIn(String sessionId, Collection<Long> itemIds);
+
+    /**
+     * Добавляет товар в корзину сессии или увеличивает количество одним запросом
+     * (уникальный ключ unique_cart_item по session_id, item_id)
+     *
+     * @return строка корзины с новым количеством
+     */
+    @Query("""
+            INSERT INTO cart_items (session_id, item_id, quantity)
+            VALUES (:sessionId, :itemId, 1)
+            ON CONFLICT (session_id, item_id) DO UPDATE SET quantity = cart_items.quantity + 1
+            RETURNING id, session_id, item_id, quantity""")
+    Mono<CartItem> increment(String sessionId, Long itemId);
+
+    /**
+     * Уменьшает количество на единицу, а последнюю единицу удаляет из корзины. Строка блокируется в target,
+     * поэтому одновременные запросы выполняются по очереди и видят результат друг друга
+     *
+     * @return строка корзины с новым количеством или пустой результат, если строка удалена или ее не было
+     */
+    @Query("""
+            WITH target AS (
+                SELECT id, quantity FROM cart_items
+                WHERE session_id = :sessionId AND item_id = :itemId
+                FOR UPDATE
+            ), deleted AS (
+                DELETE FROM cart_items c USING target t
+                WHERE c.id = t.id AND t.quantity <= 1
+                RETURNING c.id
+            ), updated AS (
+                UPDATE cart_items c SET quantity = t.quantity - 1
+                FROM target t
+                WHERE c.id = t.id AND t.quantity > 1
+                RETURNING c.id, c.session_id, c.item_id, c.quantity
+            )
+            SELECT id, session_id, item_id, quantity FROM updated""")
+    Mono<CartItem> decrement(String sessionId, Long itemId);
+
+    @Modifying
+    @Query("DELETE FROM cart_items WHERE session_id = :sessionId AND item_id = :itemId")
+    Mono<Integer> deleteBySessionIdAndItemId(String sessionId, Long itemId);
+
+    /**
+     * Изменяет несколько товаров корзины одним запросом. Для каждого товара передается итог его действий
+     * в виде GREATEST((fromZero ? 0 : quantity) + delta, minQuantity), и новое количество считается в БД
+     * от текущего значения строки: параллельные пакеты не теряют изменений, в том числе для товаров,
+     * которых еще нет в корзине. Строки с нулевым количеством удаляет {@link #deleteEmpty(String, Collection)}
+     *
+     * @return строки после изменения
+     */
+    @Query("""
+            WITH k AS (
+                SELECT *
+                FROM unnest(CAST(:itemIds AS BIGINT[]), CAST(:deltas AS INT[]), CAST(:minQuantities AS INT[]),
+                            CAST(:fromZero AS BOOLEAN[])) AS k(item_id, delta, min_quantity, from_zero)
+            )
+            INSERT INTO cart_items (session_id, item_id, quantity)
+            SELECT CAST(:sessionId AS VARCHAR), k.item_id, GREATEST(k.delta, k.min_quantity)
+            FROM k
+            ON CONFLICT (session_id, item_id) DO UPDATE
+                SET quantity = (SELECT GREATEST(CASE WHEN k.from_zero THEN 0 ELSE cart_items.quantity END + k.delta,
+                                                k.min_quantity)
+                                FROM k
+                                WHERE k.item_id = EXCLUDED.item_id)
+            RETURNING id, session_id, item_id, quantity""")
+    Flux<CartItem> applyChanges(String sessionId, Long[] itemIds, Integer[] deltas, Integer[] minQuantities,
+                                Boolean[] fromZero);
+
+    @Modifying
+    @Query("DELETE FROM cart_items WHERE session_id = :sessionId AND item_id IN (:itemIds) AND quantity <= 0")
+    Mono<Integer> deleteEmpty(String sessionId, Collection<Long> itemIds);
+
+    /**
+     * Записывает количество товаров в корзинах нескольких сессий одним запросом.
+     * Строки передаются параллельными массивами: сессия, товар, количество
+     */
+    @Modifying
+    @Query("""
+            INSERT INTO cart_items (session_id, item_id, quantity)
+            SELECT *
+            FROM unnest(CAST(:sessionIds AS VARCHAR[]), CAST(:itemIds AS BIGINT[]), CAST(:quantities AS INT[]))
+            ON CONFLICT (session_id, item_id) DO UPDATE SET quantity = EXCLUDED.quantity""")
+    Mono<Integer> upsertAll(String[] sessionIds, Long[] itemIds, Integer[] quantities);
+
+    /**
+     * Удаляет из корзин сессий sessions все товары, кроме переданных парами (sessionIds[i], itemIds[i])
+     */
+    @Modifying
+    @Query("""
+            DELETE FROM cart_items c
+            WHERE c.session_id = ANY (CAST(:sessions AS VARCHAR[]))
+              AND NOT EXISTS (SELECT 1
+                              FROM unnest(CAST(:sessionIds AS VARCHAR[]), CAST(:itemIds AS BIGINT[]))
+                                       AS k(session_id, item_id)
+                              WHERE k.session_id = c.session_id
+                                AND k.item_id = c.item_id)""")
+    Mono<Integer> deleteAllExcept(String[] sessions, String[] sessionIds, Long[] itemIds);
+
+    /**
+     * Очищает корзину сессии
+     *
+     * @return id удаленных товаров
+     */
+    @Query("DELETE FROM cart_items WHERE session_id = :sessionId RETURNING item_id")
+    Flux<Long> deleteAllBySessionId(String sessionId);
 }
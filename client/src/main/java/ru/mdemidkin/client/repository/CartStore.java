@@ -0,0 +1,69 @@
+package ru.mdemidkin.client.repository;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.mdemidkin.client.dto.CartItemActionDto;
+import ru.mdemidkin.client.model.CartItem;
+import ru.mdemidkin.client.model.Item;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Хранилище корзин, выбирается настройкой app-cart.store:
+ * <ul>
+ *     <li>database - таблица cart_items с кешем cartItem в Redis ({@link DatabaseCartStore});</li>
+ *     <li>redis - hash в Redis без записи в БД, корзина попадает в Postgres только заказом ({@link RedisCartStore});</li>
+ *     <li>write-behind - hash в Redis с отложенной пакетной записью в cart_items ({@link WriteBehindCartStore}).</li>
+ * </ul>
+ * У каждой веб-сессии своя корзина. Изменения количества атомарны в обоих вариантах
+ */
+public interface CartStore {
+
+    Mono<CartItem> findByItemId(String sessionId, Long itemId);
+
+    /**
+     * @return itemId -> количество, только для товаров, которые лежат в корзине
+     */
+    Mono<Map<Long, Integer>> getQuantities(String sessionId, Collection<Long> itemIds);
+
+    Flux<CartItem> findAll(String sessionId);
+
+    /**
+     * Товары корзины с количеством в поле count
+     */
+    Flux<Item> findItemsInCart(String sessionId);
+
+    Mono<CartItem> save(CartItem cartItem);
+
+    /**
+     * @return строка корзины с новым количеством
+     */
+    Mono<CartItem> increment(String sessionId, Long itemId);
+
+    /**
+     * Последняя единица удаляет товар из корзины
+     *
+     * @return строка корзины с новым количеством или пустой результат, если товар удален
+     */
+    Mono<CartItem> decrement(String sessionId, Long itemId);
+
+    Mono<Void> delete(CartItem cartItem);
+
+    Mono<Void> remove(String sessionId, Long itemId);
+
+    Mono<Void> clear(String sessionId);
+
+    /**
+     * Применяет действия по порядку одной операцией хранилища: одной транзакцией БД или одним Lua-скриптом
+     */
+    Mono<Void> apply(String sessionId, List<CartItemActionDto> actions);
+
+    /**
+     * Записывает в БД отложенные изменения корзины. Хранилища без отложенной записи ничего не делают
+     */
+    default Mono<Void> flush(String sessionId) {
+        return Mono.empty();
+    }
+}
@@ -0,0 +1,188 @@
+package ru.mdemidkin.client.repository;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.CachePut;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.mdemidkin.client.cache.CacheGenerations;
+import ru.mdemidkin.client.cache.CacheScope;
+import ru.mdemidkin.client.dto.CartItemActionDto;
+import ru.mdemidkin.client.model.CartItem;
+import ru.mdemidkin.client.model.Item;
+import ru.mdemidkin.client.model.enums.ItemAction;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Корзины в таблице cart_items. Строки корзины кешируются в cartItem, ключ содержит поколение области cart
+ * и id сессии, поэтому записи разных покупателей не пересекаются
+ */
+@Repository
+@ConditionalOnProperty(name = "app-cart.store", havingValue = "database", matchIfMissing = true)
+public class DatabaseCartStore implements CartStore {
+
+    private static final String CACHE_NAME = "cartItem";
+
+    private final CartRepository cartRepository;
+    private final ItemRepository itemRepository;
+    private final Cache cache;
+    private final CacheGenerations cacheGenerations;
+    private final TransactionalOperator transactionalOperator;
+
+    public DatabaseCartStore(CartRepository cartRepository,
+                             ItemRepository itemRepository,
+                             CacheManager cacheManager,
+                             CacheGenerations cacheGenerations,
+                             TransactionalOperator transactionalOperator) {
+        this.cartRepository = cartRepository;
+        this.itemRepository = itemRepository;
+        this.cache = cacheManager.getCache(CACHE_NAME);
+        this.cacheGenerations = cacheGenerations;
+        this.transactionalOperator = transactionalOperator;
+    }
+
+    @Override
+    @Cacheable(cacheNames = CACHE_NAME, key = "{@cacheGenerations.current('cart'), #sessionId, #itemId}")
+    public Mono<CartItem> findByItemId(String sessionId, Long itemId) {
+        return cartRepository.findBySessionIdAndItemId(sessionId, itemId);
+    }
+
+    @Override
+    public Mono<Map<Long, Integer>> getQuantities(String sessionId, Collection<Long> itemIds) {
+        return cartRepository.findAllBySessionIdAndItemIdIn(sessionId, itemIds)
+                .collectMap(CartItem::getItemId, CartItem::getQuantity);
+    }
+
+    @Override
+    public Flux<CartItem> findAll(String sessionId) {
+        return cartRepository.findAllBySessionId(sessionId);
+    }
+
+    @Override
+    public Flux<Item> findItemsInCart(String sessionId) {
+        return itemRepository.findItemsInCart(sessionId);
+    }
+
+    @Override
+    @CachePut(cacheNames = CACHE_NAME, key = "{@cacheGenerations.current('cart'), #cartItem.sessionId, #cartItem.itemId}")
+    public Mono<CartItem> save(CartItem cartItem) {
+        return cartRepository.save(cartItem);
+    }
+
+    /**
+     * Атомарное "+1" в БД без чтения строки. Новая строка сразу кладется в кеш
+     */
+    @Override
+    @CachePut(cacheNames = CACHE_NAME, key = "{@cacheGenerations.current('cart'), #sessionId, #itemId}")
+    public Mono<CartItem> increment(String sessionId, Long itemId) {
+        return cartRepository.increment(sessionId, itemId);
+    }
+
+    /**
+     * Атомарное "-1" в БД. Запись кеша сбрасывается, так как при удалении класть в кеш нечего
+     */
+    @Override
+    @CacheEvict(cacheNames = CACHE_NAME, key = "{@cacheGenerations.current('cart'), #sessionId, #itemId}")
+    public Mono<CartItem> decrement(String sessionId, Long itemId) {
+        return cartRepository.decrement(sessionId, itemId);
+    }
+
+    @Override
+    @CacheEvict(cacheNames = CACHE_NAME, key = "{@cacheGenerations.current('cart'), #cartItem.sessionId, #cartItem.itemId}")
+    public Mono<Void> delete(CartItem cartItem) {
+        return cartRepository.delete(cartItem);
+    }
+
+    @Override
+    @CacheEvict(cacheNames = CACHE_NAME, key = "{@cacheGenerations.current('cart'), #sessionId, #itemId}")
+    public Mono<Void> remove(String sessionId, Long itemId) {
+        return cartRepository.deleteBySessionIdAndItemId(sessionId, itemId).then();
+    }
+
+    /**
+     * Очищает корзину одной сессии и сбрасывает только ее записи кеша: поколение cart общее для всех сессий,
+     * и его увеличение сбросило бы корзины остальных покупателей
+     */
+    @Override
+    public Mono<Void> clear(String sessionId) {
+        return cartRepository.deleteAllBySessionId(sessionId)
+                .doOnNext(itemId -> cache.evict(cacheKey(sessionId, itemId)))
+                .then();
+    }
+
+    /**
+     * Сколько бы ни было действий, в транзакции выполняются два запроса: действия каждого товара сворачиваются
+     * в одно изменение, которое БД применяет к текущему количеству, затем удаляются опустевшие строки.
+     * Строки заранее не блокируются и не читаются. После фиксации записи кеша cartItem заменяются итоговыми строками
+     */
+    @Override
+    public Mono<Void> apply(String sessionId, List<CartItemActionDto> actions) {
+        Map<Long, QuantityChange> changes = new LinkedHashMap<>();
+        for (CartItemActionDto action : actions) {
+            changes.merge(action.itemId(), QuantityChange.NONE.then(action.action()),
+                    (current, next) -> current.then(action.action()));
+        }
+        if (changes.isEmpty()) {
+            return Mono.empty();
+        }
+        List<Long> itemIds = List.copyOf(changes.keySet());
+        Mono<Map<Long, CartItem>> write = cartRepository.applyChanges(sessionId,
+                        itemIds.toArray(Long[]::new),
+                        changes.values().stream().map(QuantityChange::delta).toArray(Integer[]::new),
+                        changes.values().stream().map(QuantityChange::minQuantity).toArray(Integer[]::new),
+                        changes.values().stream().map(QuantityChange::fromZero).toArray(Boolean[]::new))
+                .filter(row -> row.getQuantity() > 0)
+                .collect(Collectors.toMap(CartItem::getItemId, Function.identity()))
+                .flatMap(rows -> cartRepository.deleteEmpty(sessionId, itemIds).thenReturn(rows));
+        return transactionalOperator.transactional(write)
+                .doOnNext(rows -> itemIds.forEach(itemId -> {
+                    CartItem row = rows.get(itemId);
+                    if (row != null) {
+                        cache.put(cacheKey(sessionId, itemId), row);
+                    } else {
+                        cache.evict(cacheKey(sessionId, itemId));
+                    }
+                }))
+                .then();
+    }
+
+    /**
+     * Итог нескольких действий над одним товаром: количество q превращается в
+     * max((fromZero ? 0 : q) + delta, minQuantity). Такие изменения замкнуты относительно композиции,
+     * поэтому "-" на пустом товаре с последующим "+" дает 1, как при поочередных нажатиях
+     */
+    record QuantityChange(boolean fromZero, int delta, int minQuantity) {
+
+        static final QuantityChange NONE = new QuantityChange(false, 0, 0);
+
+        QuantityChange then(ItemAction action) {
+            return switch (action) {
+                case plus -> shift(1);
+                case minus -> shift(-1);
+                case delete -> new QuantityChange(true, 0, 0);
+            };
+        }
+
+        private QuantityChange shift(int by) {
+            return new QuantityChange(fromZero, delta + by, Math.max(minQuantity + by, 0));
+        }
+    }
+
+    /**
+     * Тот же ключ, что строит SpEL {@code {@cacheGenerations.current('cart'), #sessionId, #itemId}}
+     */
+    private Object cacheKey(String sessionId, Long itemId) {
+        return List.of(cacheGenerations.current(CacheScope.CART), sessionId, itemId);
+    }
+}
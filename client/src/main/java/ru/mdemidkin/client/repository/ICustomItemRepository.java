@@ -2,14 +2,54 @@ package ru.mdemidkin.client.repository;
 
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import ru.mdemidkin.client.dto.ItemsPage;
+import ru.mdemidkin.client.dto.PageCursor;
 import ru.mdemidkin.client.model.Item;
+import ru.mdemidkin.client.model.enums.SearchMode;
 import ru.mdemidkin.client.model.enums.SortType;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
 public interface ICustomItemRepository {
 
     Flux<Item> findItemsByOrderId(Long orderId);
 
+    /**
+     * Товары сразу нескольких заказов одним запросом
+     *
+     * @return orderId -> товары заказа с количеством и ценой на момент покупки
+     */
+    Mono<Map<Long, List<Item>>> findItemsByOrderIds(Collection<Long> orderIds);
+
+    /**
+     * Товары корзины сессии одним join-запросом, количество в корзине проставлено в count
+     */
+    Flux<Item> findItemsInCart(String sessionId);
+
     Mono<Long> getCountBySearch(String search);
 
     Flux<Item> getItemsBySearch(String search, SortType sortType, int pageNumber, int pageSize);
+
+    Mono<Long> getCountBySearch(String search, SearchMode mode);
+
+    Flux<Item> getItemsBySearch(String search, SortType sortType, SearchMode mode, int pageNumber, int pageSize);
+
+    /**
+     * Страница товаров вместе с общим числом найденных записей за один запрос (COUNT(*) OVER()).
+     * Для страницы за пределами выдачи строк нет, и общее число возвращается равным нулю
+     */
+    Mono<ItemsPage> getItemsPageBySearch(String search, SortType sortType, SearchMode mode, int pageNumber, int pageSize);
+
+    /**
+     * Keyset-пагинация: товары строго после (или до) курсора в порядке сортировки,
+     * без OFFSET, поэтому стоимость не зависит от глубины страницы
+     *
+     * @param cursor  позиция (ключ сортировки, id) последнего просмотренного товара, null - с начала
+     * @param forward true - вперед по возрастанию, false - назад (товары возвращаются по убыванию)
+     * @param limit   максимальное число товаров
+     */
+    Flux<Item> getItemsBySearchAfter(String search, SortType sortType, SearchMode mode,
+                                     PageCursor cursor, boolean forward, int limit);
 }
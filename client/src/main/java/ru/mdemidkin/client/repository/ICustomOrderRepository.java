@@ -0,0 +1,23 @@
+package ru.mdemidkin.client.repository;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.mdemidkin.client.dto.OrderDto;
+import ru.mdemidkin.client.dto.PageCursor;
+
+public interface ICustomOrderRepository {
+
+    /**
+     * Страница истории заказов (от новых к старым) вместе с товарами одним join-запросом.
+     * Строки группируются в заказы по мере чтения, весь результат в памяти не собирается
+     *
+     * @param before позиция (created_at, id) последнего заказа предыдущей страницы, null - с начала
+     * @param limit  число заказов на странице
+     */
+    Flux<OrderDto> findOrdersWithItems(PageCursor before, int limit);
+
+    /**
+     * @return курсор для следующей страницы или пустой Mono, если следующей страницы нет
+     */
+    Mono<PageCursor> findNextOrdersCursor(PageCursor before, int limit);
+}
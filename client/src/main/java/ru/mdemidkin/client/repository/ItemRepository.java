@@ -1,11 +1,45 @@
 package ru.mdemidkin.client.repository;
 
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.r2dbc.repository.R2dbcRepository;
 import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 import ru.mdemidkin.client.model.Item;
 
 @Repository
 public interface ItemRepository extends
         R2dbcRepository<Item, Long>,
         ICustomItemRepository {
+
+    @Query("SELECT id FROM items")
+    Flux<Long> findAllIds();
+
+    /**
+     * Списывает остатки всех товаров заказа одним условным UPDATE без предварительного SELECT ... FOR UPDATE:
+     * строка товара блокируется только на время своего изменения до конца транзакции,
+     * а товар без достаточного остатка просто не попадает в результат
+     *
+     * @return id товаров, остаток которых списан
+     */
+    @Query("""
+            UPDATE items i
+            SET stock_count = i.stock_count - k.quantity
+            FROM unnest(CAST(:itemIds AS BIGINT[]), CAST(:quantities AS INT[])) AS k(item_id, quantity)
+            WHERE i.id = k.item_id
+              AND i.stock_count >= k.quantity
+            RETURNING i.id""")
+    Flux<Long> reserveStock(Long[] itemIds, Integer[] quantities);
+
+    /**
+     * Возвращает на склад остатки, списанные {@link #reserveStock(Long[], Integer[])}
+     */
+    @Modifying
+    @Query("""
+            UPDATE items i
+            SET stock_count = i.stock_count + k.quantity
+            FROM unnest(CAST(:itemIds AS BIGINT[]), CAST(:quantities AS INT[])) AS k(item_id, quantity)
+            WHERE i.id = k.item_id""")
+    Mono<Integer> releaseStock(Long[] itemIds, Integer[] quantities);
 }
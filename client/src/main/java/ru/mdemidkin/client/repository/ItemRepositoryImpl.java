@@ -6,14 +6,23 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
 import org.springframework.data.relational.core.query.Criteria;
+import org.springframework.r2dbc.core.DatabaseClient;
 import org.springframework.stereotype.Repository;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import ru.mdemidkin.client.dto.ItemsPage;
+import ru.mdemidkin.client.dto.PageCursor;
 import ru.mdemidkin.client.mapper.ItemMapper;
 import ru.mdemidkin.client.model.Item;
-import ru.mdemidkin.client.model.OrderItem;
+import ru.mdemidkin.client.model.enums.SearchMode;
 import ru.mdemidkin.client.model.enums.SortType;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 import static org.springframework.data.relational.core.query.Criteria.empty;
 import static org.springframework.data.relational.core.query.Criteria.where;
 import static org.springframework.data.relational.core.query.Query.query;
@@ -22,19 +31,72 @@ import static org.springframework.data.relational.core.query.Query.query;
 @RequiredArgsConstructor
 public class ItemRepositoryImpl implements ICustomItemRepository {
 
+    private static final String ITEM_COLUMNS = "id, title, description, img_path, price, stock_count";
+
+    private static final String FULL_TEXT_PREDICATE = """
+            (search_vector @@ websearch_to_tsquery('russian', :query)
+                OR title ILIKE :pattern
+                OR description ILIKE :pattern)""";
+
+    /**
+     * Товары заказа одним join-запросом: количество и цена берутся из строки заказа
+     */
+    private static final String ORDER_ITEMS_SELECT = """
+            SELECT oi.order_id, i.id, i.title, i.description, i.img_path,
+                   oi.price_per_item AS price, i.stock_count, oi.quantity AS count
+            FROM order_items oi
+                     JOIN items i ON i.id = oi.item_id""";
+
+    private static final String CART_ITEMS_SELECT = """
+            SELECT i.id, i.title, i.description, i.img_path, i.price, i.stock_count, c.quantity AS count
+            FROM cart_items c
+                     JOIN items i ON i.id = c.item_id
+            WHERE c.session_id = :sessionId
+            ORDER BY c.id""";
+
+    private static final String LIKE_PREDICATE = "(title LIKE :pattern OR description LIKE :pattern)";
+
+    private static final String RELEVANCE_ORDER = """
+            ts_rank(search_vector, websearch_to_tsquery('russian', :query)) DESC,
+            similarity(title, :query) DESC,
+            id""";
+
     private final ItemMapper mapper;
     private final R2dbcEntityTemplate template;
 
     @Override
     public Flux<Item> findItemsByOrderId(Long orderId) {
-        return template.select(OrderItem.class)
-                .matching(query(where("order_id").is(orderId)))
+        return template.getDatabaseClient()
+                .sql(ORDER_ITEMS_SELECT + " WHERE oi.order_id = :orderId ORDER BY oi.id")
+                .bind("orderId", orderId)
+                .fetch()
                 .all()
-                .flatMap(orderItem -> template.select(Item.class)
-                        .matching(query(Criteria.where("id").is(orderItem.getItemId())))
-                        .one()
-                        .map(item -> mapper.toItem(item, orderItem))
-                );
+                .map(mapper::toItem);
+    }
+
+    @Override
+    public Mono<Map<Long, List<Item>>> findItemsByOrderIds(Collection<Long> orderIds) {
+        if (orderIds.isEmpty()) {
+            return Mono.just(Map.of());
+        }
+        return template.getDatabaseClient()
+                .sql(ORDER_ITEMS_SELECT + " WHERE oi.order_id IN (:orderIds) ORDER BY oi.order_id, oi.id")
+                .bind("orderIds", orderIds)
+                .fetch()
+                .all()
+                .collect(LinkedHashMap::new, (itemsByOrder, row) -> itemsByOrder
+                        .computeIfAbsent((Long) row.get("order_id"), id -> new ArrayList<>())
+                        .add(mapper.toItem(row)));
+    }
+
+    @Override
+    public Flux<Item> findItemsInCart(String sessionId) {
+        return template.getDatabaseClient()
+                .sql(CART_ITEMS_SELECT)
+                .bind("sessionId", sessionId)
+                .fetch()
+                .all()
+                .map(mapper::toItem);
     }
 
     @Override
@@ -53,6 +115,136 @@ public class ItemRepositoryImpl implements ICustomItemRepository {
                 .all();
     }
 
+    @Override
+    public Mono<Long> getCountBySearch(String search, SearchMode mode) {
+        if (mode != SearchMode.FULL_TEXT || isBlank(search)) {
+            return getCountBySearch(search);
+        }
+        String sql = "SELECT COUNT(*) AS total FROM items WHERE " + FULL_TEXT_PREDICATE;
+        return bindFullText(template.getDatabaseClient().sql(sql), search)
+                .map(row -> row.get("total", Long.class))
+                .one();
+    }
+
+    @Override
+    public Flux<Item> getItemsBySearch(String search, SortType sortType, SearchMode mode, int pageNumber, int pageSize) {
+        if (mode != SearchMode.FULL_TEXT || isBlank(search)) {
+            return getItemsBySearch(search, sortType, pageNumber, pageSize);
+        }
+        String sql = "SELECT " + ITEM_COLUMNS + " FROM items WHERE " + FULL_TEXT_PREDICATE
+                + " ORDER BY " + getFullTextOrder(sortType)
+                + " LIMIT :limit OFFSET :offset";
+        return bindFullText(template.getDatabaseClient().sql(sql), search)
+                .bind("limit", pageSize)
+                .bind("offset", (long) (pageNumber - 1) * pageSize)
+                .fetch()
+                .all()
+                .map(mapper::toItem);
+    }
+
+    @Override
+    public Mono<ItemsPage> getItemsPageBySearch(String search, SortType sortType, SearchMode mode,
+                                                int pageNumber, int pageSize) {
+        String sql = "SELECT " + ITEM_COLUMNS + ", COUNT(*) OVER() AS total_count FROM items"
+                + " WHERE " + searchPredicate(search, mode)
+                + " ORDER BY " + getOrder(search, sortType, mode)
+                + " LIMIT :limit OFFSET :offset";
+        return bindSearch(template.getDatabaseClient().sql(sql), search, mode)
+                .bind("limit", pageSize)
+                .bind("offset", (long) (pageNumber - 1) * pageSize)
+                .fetch()
+                .all()
+                .collectList()
+                .map(rows -> new ItemsPage(
+                        rows.stream().map(mapper::toItem).toList(),
+                        rows.isEmpty() ? 0 : ((Number) rows.get(0).get("total_count")).longValue()));
+    }
+
+    @Override
+    public Flux<Item> getItemsBySearchAfter(String search, SortType sortType, SearchMode mode,
+                                            PageCursor cursor, boolean forward, int limit) {
+        String sortColumn = sortType == SortType.PRICE ? "price" : "title";
+        String direction = forward ? "ASC" : "DESC";
+
+        StringBuilder sql = new StringBuilder("SELECT " + ITEM_COLUMNS + " FROM items WHERE ")
+                .append(searchPredicate(search, mode));
+        if (cursor != null) {
+            sql.append(" AND (").append(sortColumn).append(", id) ")
+                    .append(forward ? ">" : "<")
+                    .append(" (:cursorKey, :cursorId)");
+        }
+        sql.append(" ORDER BY ").append(sortColumn).append(" ").append(direction)
+                .append(", id ").append(direction)
+                .append(" LIMIT :limit");
+
+        DatabaseClient.GenericExecuteSpec spec = bindSearch(template.getDatabaseClient().sql(sql.toString()), search, mode)
+                .bind("limit", limit);
+        if (cursor != null) {
+            spec = spec
+                    .bind("cursorKey", sortType == SortType.PRICE ? cursor.numericKey() : cursor.key())
+                    .bind("cursorId", cursor.id());
+        }
+        return spec.fetch()
+                .all()
+                .map(mapper::toItem);
+    }
+
+    private String searchPredicate(String search, SearchMode mode) {
+        if (isBlank(search)) {
+            return "TRUE";
+        }
+        return mode == SearchMode.FULL_TEXT ? FULL_TEXT_PREDICATE : LIKE_PREDICATE;
+    }
+
+    private DatabaseClient.GenericExecuteSpec bindSearch(DatabaseClient.GenericExecuteSpec spec,
+                                                         String search, SearchMode mode) {
+        if (isBlank(search)) {
+            return spec;
+        }
+        if (mode == SearchMode.FULL_TEXT) {
+            return bindFullText(spec, search);
+        }
+        return spec.bind("pattern", "%" + escapeLike(search.toLowerCase()) + "%");
+    }
+
+    /**
+     * Полнотекстовый поиск идет по индексу search_vector, а ILIKE по подстроке
+     * обслуживается триграммными индексами, поэтому seq scan по items не нужен
+     */
+    private DatabaseClient.GenericExecuteSpec bindFullText(DatabaseClient.GenericExecuteSpec spec, String search) {
+        String query = search.trim();
+        return spec
+                .bind("query", query)
+                .bind("pattern", "%" + escapeLike(query) + "%");
+    }
+
+    private String getOrder(String search, SortType sortType, SearchMode mode) {
+        if (sortType == SortType.NO && (isBlank(search) || mode != SearchMode.FULL_TEXT)) {
+            return "title, id";
+        }
+        return getFullTextOrder(sortType);
+    }
+
+    private String getFullTextOrder(SortType sortType) {
+        if (sortType == SortType.ALPHA) {
+            return "title, id";
+        } else if (sortType == SortType.PRICE) {
+            return "price, id";
+        }
+        return RELEVANCE_ORDER;
+    }
+
+    private String escapeLike(String value) {
+        return value
+                .replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_");
+    }
+
+    private boolean isBlank(String search) {
+        return search == null || search.isBlank();
+    }
+
     private Criteria searchCriteria(String search) {
         return (search == null || search.isBlank())
                 ? empty()
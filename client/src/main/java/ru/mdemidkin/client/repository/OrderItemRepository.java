@@ -1,9 +1,40 @@
 package ru.mdemidkin.client.repository;
 
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.r2dbc.repository.R2dbcRepository;
 import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 import ru.mdemidkin.client.model.OrderItem;
 
+import java.time.LocalDateTime;
+
 @Repository
 public interface OrderItemRepository extends R2dbcRepository<OrderItem, Long> {
+
+    /**
+     * Id товаров, которых больше всего заказали начиная с since
+     */
+    @Query("""
+            SELECT oi.item_id
+            FROM order_items oi
+            JOIN orders o ON o.id = oi.order_id
+            WHERE o.created_at >= :since
+            GROUP BY oi.item_id
+            ORDER BY SUM(oi.quantity) DESC
+            LIMIT :limit""")
+    Flux<Long> findTopOrderedItemIds(LocalDateTime since, int limit);
+
+    /**
+     * Все позиции заказа одним INSERT: строки передаются параллельными массивами товар, количество, цена,
+     * поэтому число запросов не зависит от размера корзины
+     */
+    @Modifying
+    @Query("""
+            INSERT INTO order_items (order_id, item_id, quantity, price_per_item)
+            SELECT :orderId, k.item_id, k.quantity, k.price_per_item
+            FROM unnest(CAST(:itemIds AS BIGINT[]), CAST(:quantities AS INT[]), CAST(:prices AS DECIMAL[]))
+                     AS k(item_id, quantity, price_per_item)""")
+    Mono<Integer> insertAll(Long orderId, Long[] itemIds, Integer[] quantities, Double[] prices);
 }
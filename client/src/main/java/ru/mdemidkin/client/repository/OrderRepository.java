@@ -5,5 +5,7 @@ import org.springframework.stereotype.Repository;
 import ru.mdemidkin.client.model.Order;
 
 @Repository
-public interface OrderRepository extends R2dbcRepository<Order, Long> {
+public interface OrderRepository extends
+        R2dbcRepository<Order, Long>,
+        ICustomOrderRepository {
 }
@@ -0,0 +1,79 @@
+package ru.mdemidkin.client.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.mdemidkin.client.dto.OrderDto;
+import ru.mdemidkin.client.dto.PageCursor;
+import ru.mdemidkin.client.mapper.OrderMapper;
+
+import java.time.LocalDateTime;
+
+@Repository
+@RequiredArgsConstructor
+public class OrderRepositoryImpl implements ICustomOrderRepository {
+
+    private static final String CURSOR_PREDICATE = "WHERE (created_at, id) < (:cursorCreatedAt, :cursorId)";
+
+    private static final String ORDERS_WITH_ITEMS_SELECT = """
+            SELECT o.id AS order_id, o.created_at, o.total_price,
+                   i.id, i.title, i.description, i.img_path,
+                   oi.price_per_item AS price, i.stock_count, oi.quantity AS count
+            FROM (SELECT id, created_at, total_price
+                  FROM orders
+                  %s
+                  ORDER BY created_at DESC, id DESC
+                  LIMIT :limit) o
+                     JOIN order_items oi ON oi.order_id = o.id
+                     JOIN items i ON i.id = oi.item_id
+            ORDER BY o.created_at DESC, o.id DESC, oi.id""";
+
+    private static final String NEXT_CURSOR_SELECT = """
+            SELECT created_at, id
+            FROM orders
+            %s
+            ORDER BY created_at DESC, id DESC
+            LIMIT 2 OFFSET :offset""";
+
+    private final OrderMapper mapper;
+    private final R2dbcEntityTemplate template;
+
+    @Override
+    public Flux<OrderDto> findOrdersWithItems(PageCursor before, int limit) {
+        String sql = ORDERS_WITH_ITEMS_SELECT.formatted(before != null ? CURSOR_PREDICATE : "");
+        return bindCursor(template.getDatabaseClient().sql(sql), before)
+                .bind("limit", limit)
+                .fetch()
+                .all()
+                .bufferUntilChanged(row -> row.get("order_id"))
+                .map(mapper::toDto);
+    }
+
+    /**
+     * Смотрим на последний заказ текущей страницы и следующий за ним:
+     * если следующий есть, последний заказ страницы и будет курсором
+     */
+    @Override
+    public Mono<PageCursor> findNextOrdersCursor(PageCursor before, int limit) {
+        String sql = NEXT_CURSOR_SELECT.formatted(before != null ? CURSOR_PREDICATE : "");
+        return bindCursor(template.getDatabaseClient().sql(sql), before)
+                .bind("offset", Math.max(limit - 1, 0))
+                .map(row -> PageCursor.of(row.get("created_at", LocalDateTime.class), row.get("id", Long.class)))
+                .all()
+                .collectList()
+                .filter(cursors -> cursors.size() > 1)
+                .map(cursors -> cursors.get(0));
+    }
+
+    private DatabaseClient.GenericExecuteSpec bindCursor(DatabaseClient.GenericExecuteSpec spec, PageCursor before) {
+        if (before == null) {
+            return spec;
+        }
+        return spec
+                .bind("cursorCreatedAt", LocalDateTime.parse(before.key()))
+                .bind("cursorId", before.id());
+    }
+}
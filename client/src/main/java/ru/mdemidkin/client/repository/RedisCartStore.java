@@ -0,0 +1,201 @@
+package ru.mdemidkin.client.repository;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.ReactiveHashOperations;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.mdemidkin.client.config.AppCartProperties;
+import ru.mdemidkin.client.dto.CartItemActionDto;
+import ru.mdemidkin.client.model.CartItem;
+import ru.mdemidkin.client.model.Item;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Корзины в hash Redis, по ключу на сессию: поле - id товара, значение - количество. "+1" - HINCRBY,
+ * "-1" с удалением последней единицы - Lua-скрипт, чтение всей корзины - один HGETALL.
+ * Значения хранятся строками, поэтому используется {@link ReactiveStringRedisTemplate}:
+ * HINCRBY работает только с числами в текстовом виде.
+ * В БД корзина не пишется, в Postgres она попадает только заказом. Каждое изменение продлевает
+ * время жизни корзины (app-cart.time-to-live), корзины истекших сессий удаляет Redis
+ */
+@Repository
+@ConditionalOnProperty(name = "app-cart.store", havingValue = "redis")
+public class RedisCartStore implements CartStore {
+
+    static final String KEY_PREFIX = "intershop:cart:";
+
+    private static final RedisScript<Long> DECREMENT_SCRIPT = RedisScript.of("""
+            local quantity = redis.call('HINCRBY', KEYS[1], ARGV[1], -1)
+            if quantity <= 0 then
+                redis.call('HDEL', KEYS[1], ARGV[1])
+                return 0
+            end
+            return quantity""", Long.class);
+
+    /**
+     * Действия по порядку (ARGV с третьего - пары товар, действие), затем продление корзины на ARGV[1] мс.
+     * Если передан KEYS[2], корзина сессии ARGV[2] отмечается для отложенной записи
+     */
+    private static final RedisScript<Long> APPLY_SCRIPT = RedisScript.of("""
+            for i = 3, #ARGV, 2 do
+                local item, action = ARGV[i], ARGV[i + 1]
+                if action == 'plus' then
+                    redis.call('HINCRBY', KEYS[1], item, 1)
+                elseif action == 'minus' then
+                    if redis.call('HINCRBY', KEYS[1], item, -1) <= 0 then
+                        redis.call('HDEL', KEYS[1], item)
+                    end
+                else
+                    redis.call('HDEL', KEYS[1], item)
+                end
+            end
+            redis.call('PEXPIRE', KEYS[1], ARGV[1])
+            if #KEYS > 1 then
+                redis.call('HINCRBY', KEYS[2], ARGV[2], 1)
+            end
+            return 1""", Long.class);
+
+    private final ReactiveStringRedisTemplate redisTemplate;
+    private final ItemRepository itemRepository;
+    private final Duration timeToLive;
+
+    public RedisCartStore(ReactiveStringRedisTemplate redisTemplate,
+                          ItemRepository itemRepository,
+                          AppCartProperties properties) {
+        this.redisTemplate = redisTemplate;
+        this.itemRepository = itemRepository;
+        this.timeToLive = properties.getTimeToLive();
+    }
+
+    @Override
+    public Mono<CartItem> findByItemId(String sessionId, Long itemId) {
+        return hash().get(key(sessionId), itemId.toString())
+                .map(quantity -> cartItem(sessionId, itemId, Integer.parseInt(quantity)));
+    }
+
+    @Override
+    public Mono<Map<Long, Integer>> getQuantities(String sessionId, Collection<Long> itemIds) {
+        return entries(sessionId)
+                .map(quantities -> quantities.entrySet().stream()
+                        .filter(entry -> itemIds.contains(entry.getKey()))
+                        .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue)));
+    }
+
+    @Override
+    public Flux<CartItem> findAll(String sessionId) {
+        return entries(sessionId)
+                .flatMapIterable(Map::entrySet)
+                .map(entry -> cartItem(sessionId, entry.getKey(), entry.getValue()));
+    }
+
+    /**
+     * Количество - из одного HGETALL, данные товаров - одним запросом по id
+     */
+    @Override
+    public Flux<Item> findItemsInCart(String sessionId) {
+        return entries(sessionId)
+                .filter(quantities -> !quantities.isEmpty())
+                .flatMapMany(quantities -> itemRepository.findAllById(quantities.keySet())
+                        .doOnNext(item -> item.setCount(quantities.get(item.getId())))
+                        .sort((a, b) -> Long.compare(a.getId(), b.getId())));
+    }
+
+    @Override
+    public Mono<CartItem> save(CartItem cartItem) {
+        String key = key(cartItem.getSessionId());
+        return hash().put(key, cartItem.getItemId().toString(), cartItem.getQuantity().toString())
+                .then(touch(key))
+                .thenReturn(cartItem);
+    }
+
+    @Override
+    public Mono<CartItem> increment(String sessionId, Long itemId) {
+        String key = key(sessionId);
+        return hash().increment(key, itemId.toString(), 1)
+                .flatMap(quantity -> touch(key).thenReturn(cartItem(sessionId, itemId, quantity.intValue())));
+    }
+
+    @Override
+    public Mono<CartItem> decrement(String sessionId, Long itemId) {
+        return redisTemplate.execute(DECREMENT_SCRIPT, List.of(key(sessionId)), List.of(itemId.toString()))
+                .next()
+                .filter(quantity -> quantity > 0)
+                .map(quantity -> cartItem(sessionId, itemId, quantity.intValue()));
+    }
+
+    @Override
+    public Mono<Void> delete(CartItem cartItem) {
+        return remove(cartItem.getSessionId(), cartItem.getItemId());
+    }
+
+    @Override
+    public Mono<Void> remove(String sessionId, Long itemId) {
+        return hash().remove(key(sessionId), itemId.toString()).then();
+    }
+
+    @Override
+    public Mono<Void> clear(String sessionId) {
+        return redisTemplate.delete(key(sessionId)).then();
+    }
+
+    /**
+     * Все действия выполняются одним Lua-скриптом, атомарно относительно остальных изменений корзины
+     */
+    @Override
+    public Mono<Void> apply(String sessionId, List<CartItemActionDto> actions) {
+        if (actions.isEmpty()) {
+            return Mono.empty();
+        }
+        List<String> args = new ArrayList<>();
+        args.add(String.valueOf(timeToLive.toMillis()));
+        args.add(sessionId);
+        for (CartItemActionDto action : actions) {
+            args.add(action.itemId().toString());
+            args.add(action.action().name());
+        }
+        return redisTemplate.execute(APPLY_SCRIPT, scriptKeys(sessionId), args).then();
+    }
+
+    /**
+     * Ключи скрипта пакетного изменения: корзина и, для отложенной записи, отметки измененных корзин
+     */
+    List<String> scriptKeys(String sessionId) {
+        return List.of(key(sessionId));
+    }
+
+    Mono<Map<Long, Integer>> entries(String sessionId) {
+        return hash().entries(key(sessionId))
+                .collectMap(entry -> Long.parseLong(entry.getKey()), entry -> Integer.parseInt(entry.getValue()),
+                        TreeMap::new);
+    }
+
+    private Mono<Boolean> touch(String key) {
+        return redisTemplate.expire(key, timeToLive);
+    }
+
+    private ReactiveHashOperations<String, String, String> hash() {
+        return redisTemplate.opsForHash();
+    }
+
+    static String key(String sessionId) {
+        return KEY_PREFIX + sessionId;
+    }
+
+    static CartItem cartItem(String sessionId, Long itemId, int quantity) {
+        return CartItem.builder()
+                .sessionId(sessionId)
+                .itemId(itemId)
+                .quantity(quantity)
+                .build();
+    }
+}
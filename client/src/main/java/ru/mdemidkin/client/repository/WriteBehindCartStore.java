@@ -0,0 +1,307 @@
+package ru.mdemidkin.client.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import ru.mdemidkin.client.config.AppCartProperties;
+import ru.mdemidkin.client.dto.CartItemActionDto;
+import ru.mdemidkin.client.model.CartItem;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Корзины в Redis с отложенной записью в cart_items. Изменение сразу применяется к hash корзины
+ * (как в {@link RedisCartStore}) и в том же Lua-скрипте отмечает корзину измененной: в hash
+ * intershop:cart:dirty растет версия сессии. Сброс записывает в БД итоговое количество, поэтому десять "+"
+ * подряд превращаются в одну строку, а корзины пачки пишутся двумя запросами (DELETE и INSERT ... unnest)
+ * в одной транзакции.
+ * <p>
+ * Сброс запускается раз в flush-interval или после batch-size изменений на узле. Одновременно сбрасывает
+ * один узел (блокировка SET NX PX), принудительный сброс сессии ждет ту же блокировку: иначе фоновый сброс
+ * мог бы записать прочитанный раньше снимок корзины поверх более нового. Отметка снимается, только если
+ * версия не изменилась за время записи, поэтому падение узла посреди сброса приводит к повторной записи,
+ * а не к потере изменений. Теряются только изменения, не сброшенные до потери данных самого Redis.
+ * <p>
+ * Таблица cart_items в этом режиме только пишется: приложение читает корзину из Redis и при промахе
+ * не восстанавливает ее из БД, корзина с истекшим time-to-live или потерянная вместе с Redis считается пустой.
+ * Строки в БД - копия последнего сброса для отчетов и ручного разбора
+ */
+@Slf4j
+@Repository
+@ConditionalOnProperty(name = "app-cart.store", havingValue = "write-behind")
+public class WriteBehindCartStore extends RedisCartStore implements InitializingBean, DisposableBean {
+
+    static final String DIRTY_KEY = "intershop:cart:dirty";
+    static final String LOCK_KEY = "intershop:cart:flush-lock";
+    private static final Duration LOCK_RETRY_DELAY = Duration.ofMillis(20);
+
+    /**
+     * Изменение количества на ARGV[2] с удалением товара при нуле
+     */
+    private static final RedisScript<Long> ADD_SCRIPT = RedisScript.of("""
+            local quantity = redis.call('HINCRBY', KEYS[1], ARGV[1], ARGV[2])
+            if quantity <= 0 then
+                redis.call('HDEL', KEYS[1], ARGV[1])
+                quantity = 0
+            end
+            redis.call('PEXPIRE', KEYS[1], ARGV[3])
+            redis.call('HINCRBY', KEYS[2], ARGV[4], 1)
+            return quantity""", Long.class);
+
+    /**
+     * Установка количества ARGV[2], ноль удаляет товар
+     */
+    private static final RedisScript<Long> SET_SCRIPT = RedisScript.of("""
+            if tonumber(ARGV[2]) > 0 then
+                redis.call('HSET', KEYS[1], ARGV[1], ARGV[2])
+            else
+                redis.call('HDEL', KEYS[1], ARGV[1])
+            end
+            redis.call('PEXPIRE', KEYS[1], ARGV[3])
+            redis.call('HINCRBY', KEYS[2], ARGV[4], 1)
+            return 1""", Long.class);
+
+    private static final RedisScript<Long> CLEAR_SCRIPT = RedisScript.of("""
+            redis.call('DEL', KEYS[1])
+            redis.call('HINCRBY', KEYS[2], ARGV[1], 1)
+            return 1""", Long.class);
+
+    /**
+     * Снимает отметки сессий (ARGV - пары сессия, версия), версия которых не изменилась после чтения
+     */
+    private static final RedisScript<Long> ACK_SCRIPT = RedisScript.of("""
+            local flushed = 0
+            for i = 1, #ARGV, 2 do
+                if redis.call('HGET', KEYS[1], ARGV[i]) == ARGV[i + 1] then
+                    redis.call('HDEL', KEYS[1], ARGV[i])
+                    flushed = flushed + 1
+                end
+            end
+            return flushed""", Long.class);
+
+    private static final RedisScript<Long> RELEASE_SCRIPT = RedisScript.of("""
+            if redis.call('GET', KEYS[1]) == ARGV[1] then
+                return redis.call('DEL', KEYS[1])
+            end
+            return 0""", Long.class);
+
+    private final ReactiveStringRedisTemplate redisTemplate;
+    private final CartRepository cartRepository;
+    private final TransactionalOperator transactionalOperator;
+    private final String timeToLiveMillis;
+    private final AppCartProperties.WriteBehind properties;
+    private final Sinks.Many<Boolean> writes = Sinks.many().multicast().directBestEffort();
+
+    private Disposable flushes;
+
+    public WriteBehindCartStore(ReactiveStringRedisTemplate redisTemplate,
+                                ItemRepository itemRepository,
+                                CartRepository cartRepository,
+                                TransactionalOperator transactionalOperator,
+                                AppCartProperties properties) {
+        super(redisTemplate, itemRepository, properties);
+        this.redisTemplate = redisTemplate;
+        this.cartRepository = cartRepository;
+        this.transactionalOperator = transactionalOperator;
+        this.timeToLiveMillis = String.valueOf(properties.getTimeToLive().toMillis());
+        this.properties = properties.getWriteBehind();
+    }
+
+    @Override
+    public Mono<CartItem> save(CartItem cartItem) {
+        return change(SET_SCRIPT, cartItem.getSessionId(), cartItem.getItemId(), cartItem.getQuantity())
+                .thenReturn(cartItem);
+    }
+
+    @Override
+    public Mono<CartItem> increment(String sessionId, Long itemId) {
+        return change(ADD_SCRIPT, sessionId, itemId, 1)
+                .map(quantity -> cartItem(sessionId, itemId, quantity.intValue()));
+    }
+
+    @Override
+    public Mono<CartItem> decrement(String sessionId, Long itemId) {
+        return change(ADD_SCRIPT, sessionId, itemId, -1)
+                .filter(quantity -> quantity > 0)
+                .map(quantity -> cartItem(sessionId, itemId, quantity.intValue()));
+    }
+
+    @Override
+    public Mono<Void> remove(String sessionId, Long itemId) {
+        return change(SET_SCRIPT, sessionId, itemId, 0).then();
+    }
+
+    @Override
+    public Mono<Void> apply(String sessionId, List<CartItemActionDto> actions) {
+        return super.apply(sessionId, actions)
+                .doOnSuccess(done -> writes.tryEmitNext(true));
+    }
+
+    @Override
+    List<String> scriptKeys(String sessionId) {
+        return List.of(key(sessionId), DIRTY_KEY);
+    }
+
+    /**
+     * Очистка при оформлении заказа сразу записывается в БД. Если записать не удалось, отметка
+     * корзины остается в Redis и очистку запишет фоновый сброс
+     */
+    @Override
+    public Mono<Void> clear(String sessionId) {
+        return redisTemplate.execute(CLEAR_SCRIPT, List.of(key(sessionId), DIRTY_KEY), List.of(sessionId))
+                .then(flush(sessionId))
+                .onErrorResume(error -> {
+                    log.warn("Failed to flush cleared cart {}, left to background flush", sessionId, error);
+                    return Mono.empty();
+                });
+    }
+
+    /**
+     * Принудительный сброс корзины сессии, например перед оформлением заказа. Ждет блокировку сброса
+     * не дольше lock-ttl: за это время блокировка другого узла либо снимается, либо истекает
+     */
+    @Override
+    public Mono<Void> flush(String sessionId) {
+        String token = UUID.randomUUID().toString();
+        return lock(token)
+                .repeatWhenEmpty(repeats -> repeats.delayElements(LOCK_RETRY_DELAY))
+                .timeout(properties.getLockTtl())
+                .flatMap(acquired -> redisTemplate.<String, String>opsForHash().get(DIRTY_KEY, sessionId)
+                        .flatMap(version -> flushBatch(List.of(Map.entry(sessionId, version))))
+                        .onErrorResume(error -> release(token).then(Mono.error(error)))
+                        .then(release(token)));
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        flushes = Flux.<Object>merge(
+                        Flux.interval(properties.getFlushInterval(), properties.getFlushInterval()),
+                        writes.asFlux().buffer(properties.getBatchSize()))
+                .onBackpressureDrop()
+                .concatMap(trigger -> flushDirty(), 1)
+                .subscribe();
+    }
+
+    /**
+     * Перед остановкой узел сбрасывает накопленные изменения. Если он упадет, не успев этого сделать,
+     * корзины останутся отмеченными в Redis и их запишет другой узел
+     */
+    @Override
+    public void destroy() {
+        if (flushes != null) {
+            flushes.dispose();
+        }
+        flushDirty().block(properties.getLockTtl());
+    }
+
+    /**
+     * Сбрасывает все отмеченные корзины пачками по batch-size, если блокировку сброса не держит другой узел
+     */
+    Mono<Void> flushDirty() {
+        String token = UUID.randomUUID().toString();
+        return lock(token)
+                .flatMap(acquired -> redisTemplate.<String, String>opsForHash().scan(DIRTY_KEY)
+                        .buffer(properties.getBatchSize())
+                        .concatMap(this::flushBatch)
+                        .then()
+                        .onErrorResume(error -> {
+                            log.warn("Failed to flush carts", error);
+                            return Mono.empty();
+                        })
+                        .then(release(token)))
+                .onErrorResume(error -> {
+                    log.warn("Failed to acquire cart flush lock", error);
+                    return Mono.empty();
+                });
+    }
+
+    /**
+     * Записывает пачку корзин в БД и снимает их отметки
+     *
+     * @param dirty сессия -> версия на момент чтения
+     */
+    Mono<Void> flushBatch(List<Map.Entry<String, String>> dirty) {
+        return writeBatch(dirty)
+                .then(acknowledge(dirty));
+    }
+
+    /**
+     * Первая половина сброса: текущее содержимое корзин пачки записывается в БД. Запись идемпотентна,
+     * повтор после падения узла до {@link #acknowledge(List)} дает тот же результат
+     */
+    Mono<Void> writeBatch(List<Map.Entry<String, String>> dirty) {
+        return Flux.fromIterable(dirty)
+                .flatMapSequential(entry -> entries(entry.getKey())
+                        .map(quantities -> Map.entry(entry.getKey(), quantities)))
+                .collectList()
+                .flatMap(carts -> transactionalOperator.transactional(write(carts)));
+    }
+
+    private Mono<Void> write(List<Map.Entry<String, Map<Long, Integer>>> carts) {
+        List<String> sessions = new ArrayList<>();
+        List<String> sessionIds = new ArrayList<>();
+        List<Long> itemIds = new ArrayList<>();
+        List<Integer> quantities = new ArrayList<>();
+        for (Map.Entry<String, Map<Long, Integer>> cart : carts) {
+            sessions.add(cart.getKey());
+            cart.getValue().forEach((itemId, quantity) -> {
+                sessionIds.add(cart.getKey());
+                itemIds.add(itemId);
+                quantities.add(quantity);
+            });
+        }
+        Mono<Integer> delete = cartRepository.deleteAllExcept(sessions.toArray(String[]::new),
+                sessionIds.toArray(String[]::new), itemIds.toArray(Long[]::new));
+        Mono<Integer> upsert = itemIds.isEmpty()
+                ? Mono.just(0)
+                : cartRepository.upsertAll(sessionIds.toArray(String[]::new), itemIds.toArray(Long[]::new),
+                quantities.toArray(Integer[]::new));
+        return delete.then(upsert)
+                .doOnNext(rows -> log.debug("Flushed {} carts, {} rows", sessions.size(), rows))
+                .then();
+    }
+
+    private Mono<Void> acknowledge(List<Map.Entry<String, String>> dirty) {
+        List<String> args = dirty.stream()
+                .flatMap(entry -> Stream.of(entry.getKey(), entry.getValue()))
+                .toList();
+        return redisTemplate.execute(ACK_SCRIPT, List.of(DIRTY_KEY), args).then();
+    }
+
+    private Mono<Long> change(RedisScript<Long> script, String sessionId, Long itemId, int value) {
+        return redisTemplate.execute(script, List.of(key(sessionId), DIRTY_KEY),
+                        List.of(itemId.toString(), String.valueOf(value), timeToLiveMillis, sessionId))
+                .next()
+                .doOnNext(result -> writes.tryEmitNext(true));
+    }
+
+    /**
+     * Блокировка сброса, пусто - ее держит другой сброс
+     */
+    private Mono<Boolean> lock(String token) {
+        return redisTemplate.opsForValue().setIfAbsent(LOCK_KEY, token, properties.getLockTtl())
+                .filter(Boolean::booleanValue);
+    }
+
+    /**
+     * Если снять блокировку не удалось, она истечет через lock-ttl
+     */
+    private Mono<Void> release(String token) {
+        return redisTemplate.execute(RELEASE_SCRIPT, List.of(LOCK_KEY), List.of(token))
+                .then();
+    }
+}
@@ -2,42 +2,100 @@ package ru.mdemidkin.client.service;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.cache.annotation.CacheEvict;
-import org.springframework.cache.annotation.CachePut;
-import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import ru.mdemidkin.client.dto.CartItemActionDto;
 import ru.mdemidkin.client.model.CartItem;
-import ru.mdemidkin.client.repository.CartRepository;
+import ru.mdemidkin.client.model.Item;
+import ru.mdemidkin.client.repository.CartStore;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Корзина веб-сессии поверх {@link CartStore}: хранилище (БД или hash в Redis) выбирается настройкой app-cart.store
+ */
 @Service
 @RequiredArgsConstructor
 public class CartService {
 
-    private final CartRepository cartItemRepository;
+    private final CartStore cartStore;
+
+    public Mono<CartItem> findItemById(String sessionId, Long itemId) {
+        return cartStore.findByItemId(sessionId, itemId);
+    }
 
-    @Cacheable(cacheNames = "cartItem", key = "#itemId")
-    public Mono<CartItem> findItemById(Long itemId) {
-        return cartItemRepository.findByItemId(itemId);
+    /**
+     * Количество в корзине для набора товаров одним запросом
+     *
+     * @return itemId -> количество, только для товаров, которые лежат в корзине
+     */
+    public Mono<Map<Long, Integer>> getQuantities(String sessionId, Collection<Long> itemIds) {
+        if (itemIds.isEmpty()) {
+            return Mono.just(Map.of());
+        }
+        return cartStore.getQuantities(sessionId, itemIds);
     }
 
-    @CachePut(cacheNames = "cartItem", key = "#cartItem.itemId")
     public Mono<CartItem> saveOrUpdate(CartItem cartItem) {
-        return cartItemRepository.save(cartItem);
+        return cartStore.save(cartItem);
     }
 
-    @CacheEvict(cacheNames = "cartItem", key = "#cartItem.itemId")
     public Mono<Void> delete(CartItem cartItem) {
-        return cartItemRepository.delete(cartItem);
+        return cartStore.delete(cartItem);
+    }
+
+    /**
+     * Атомарное "+1"
+     */
+    public Mono<CartItem> increment(String sessionId, Long itemId) {
+        return cartStore.increment(sessionId, itemId);
+    }
+
+    /**
+     * Атомарное "-1", последняя единица удаляет товар из корзины
+     */
+    public Mono<CartItem> decrement(String sessionId, Long itemId) {
+        return cartStore.decrement(sessionId, itemId);
+    }
+
+    public Mono<Void> remove(String sessionId, Long itemId) {
+        return cartStore.remove(sessionId, itemId);
+    }
+
+    /**
+     * Пакетное изменение корзины одной операцией хранилища
+     */
+    public Mono<Void> apply(String sessionId, List<CartItemActionDto> actions) {
+        return cartStore.apply(sessionId, actions);
+    }
+
+    public Flux<CartItem> getAll(String sessionId) {
+        return cartStore.findAll(sessionId);
+    }
+
+    /**
+     * Товары корзины с количеством в поле count
+     */
+    public Flux<Item> getItemsInCart(String sessionId) {
+        return cartStore.findItemsInCart(sessionId);
     }
 
-    public Flux<CartItem> getAll() {
-        return cartItemRepository.findAll();
+    /**
+     * Записывает в БД отложенные изменения корзины (app-cart.store: write-behind)
+     */
+    public Mono<Void> flush(String sessionId) {
+        return cartStore.flush(sessionId);
     }
 
-    @CacheEvict(cacheNames = {"cartItem"}, allEntries = true)
-    public Mono<Void> clearCart() {
-        return cartItemRepository.deleteAll();
+    /**
+     * Очистка корзины сбрасывает записи кеша только этой сессии, корзины остальных покупателей остаются в кеше
+     */
+    @CacheEvict(cacheNames = "cartItems", key = "{@cacheGenerations.current('cart'), #sessionId}")
+    public Mono<Void> clearCart(String sessionId) {
+        return cartStore.clear(sessionId);
     }
 
 }
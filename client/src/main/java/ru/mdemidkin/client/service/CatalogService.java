@@ -0,0 +1,121 @@
+package ru.mdemidkin.client.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import ru.mdemidkin.client.config.CatalogSearchProperties;
+import ru.mdemidkin.client.dto.ItemsSortedSearchPageDto;
+import ru.mdemidkin.client.dto.PageCursor;
+import ru.mdemidkin.client.dto.PagingDto;
+import ru.mdemidkin.client.model.Item;
+import ru.mdemidkin.client.model.enums.SortType;
+import ru.mdemidkin.client.repository.ItemRepository;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Данные каталога без данных корзины: страницы поиска и карточки товаров.
+ * Кешируются надолго в поколении области catalog, которое меняется только при изменении товаров
+ * ({@link ru.mdemidkin.client.cache.CatalogCacheInvalidator}), поэтому изменения корзины и оформление заказа
+ * их не сбрасывают. Количество в корзине накладывается при чтении в {@link ItemService}
+ */
+@Service
+@RequiredArgsConstructor
+public class CatalogService {
+
+    private final ItemRepository itemRepository;
+    private final CatalogSearchProperties searchProperties;
+
+    @Cacheable(cacheNames = "searchItems", sync = true,
+            key = "{@cacheGenerations.current('catalog'), #search, #sortType, #pageNumber, #pageSize}")
+    public Mono<ItemsSortedSearchPageDto> searchItems(String search, SortType sortType, int pageNumber, int pageSize) {
+        return itemRepository.getItemsPageBySearch(search, sortType, searchProperties.getMode(), pageNumber, pageSize)
+                .map(page -> {
+                    boolean hasNext = (long) pageNumber * pageSize < page.totalCount();
+                    boolean hasPrevious = pageNumber > 1;
+
+                    PagingDto pagingDto = new PagingDto(pageNumber, pageSize, hasNext, hasPrevious);
+                    List<List<Item>> tiles = getItemsTile(page.items());
+
+                    return new ItemsSortedSearchPageDto(search, sortType, pagingDto, tiles);
+                });
+    }
+
+    /**
+     * Страница каталога по курсору (keyset-пагинация). Запрашивается на один товар больше,
+     * чтобы без подсчета всех записей понять, есть ли следующая (предыдущая) страница
+     *
+     * @param after  курсор, после которого начинается страница
+     * @param before курсор, перед которым заканчивается страница (переход назад)
+     */
+    @Cacheable(cacheNames = "searchItems", sync = true,
+            key = "{@cacheGenerations.current('catalog'), #search, #sortType, #pageNumber, #pageSize, #after, #before}")
+    public Mono<ItemsSortedSearchPageDto> searchItemsByCursor(String search, SortType sortType, int pageNumber,
+                                                              int pageSize, String after, String before) {
+        boolean forward = before == null || before.isBlank();
+        PageCursor cursor = decodeCursor(forward ? after : before, sortType);
+
+        return itemRepository.getItemsBySearchAfter(search, sortType, searchProperties.getMode(),
+                        cursor, forward, pageSize + 1)
+                .collectList()
+                .map(rows -> {
+                    boolean hasMore = rows.size() > pageSize;
+                    List<Item> items = new ArrayList<>(rows.subList(0, Math.min(pageSize, rows.size())));
+                    if (!forward) {
+                        Collections.reverse(items);
+                    }
+
+                    boolean hasNext = forward ? hasMore : cursor != null;
+                    boolean hasPrevious = forward ? cursor != null : hasMore;
+                    String nextCursor = hasNext && !items.isEmpty()
+                            ? toCursor(items.get(items.size() - 1), sortType) : null;
+                    String previousCursor = hasPrevious && !items.isEmpty()
+                            ? toCursor(items.get(0), sortType) : null;
+
+                    PagingDto pagingDto = new PagingDto(pageNumber, pageSize, hasNext, hasPrevious,
+                            nextCursor, previousCursor);
+                    return new ItemsSortedSearchPageDto(search, sortType, pagingDto, getItemsTile(items));
+                });
+    }
+
+    @Cacheable(cacheNames = "item", key = "{@cacheGenerations.current('catalog'), #id}", sync = true)
+    public Mono<Item> getById(Long id) {
+        return itemRepository.findById(id);
+    }
+
+    /**
+     * Группируем товары по три в ряд (для представления плиткой)
+     *
+     * @param items список товаров на странице
+     * @return плитку 3х3 товаров на странице
+     */
+    private List<List<Item>> getItemsTile(List<Item> items) {
+        List<List<Item>> rows = new ArrayList<>();
+        List<Item> currentRow = null;
+
+        for (int i = 0; i < items.size(); i++) {
+            if (i % 3 == 0) {
+                currentRow = new ArrayList<>();
+                rows.add(currentRow);
+            }
+            currentRow.add(items.get(i));
+        }
+        return rows;
+    }
+
+    private PageCursor decodeCursor(String token, SortType sortType) {
+        PageCursor cursor = PageCursor.decode(token);
+        if (cursor != null && sortType == SortType.PRICE && !cursor.isNumeric()) {
+            return null;
+        }
+        return cursor;
+    }
+
+    private String toCursor(Item item, SortType sortType) {
+        Object key = sortType == SortType.PRICE ? item.getPrice() : item.getTitle();
+        return PageCursor.of(key, item.getId()).encode();
+    }
+}
@@ -0,0 +1,20 @@
+package ru.mdemidkin.client.service;
+
+import lombok.Getter;
+
+import java.util.Collection;
+
+/**
+ * Остатка на складе не хватает хотя бы для одного товара заказа. Резерв остатков откатывается целиком,
+ * до оплаты дело не доходит
+ */
+@Getter
+public class InsufficientStockException extends RuntimeException {
+
+    private final Collection<Long> itemIds;
+
+    public InsufficientStockException(Collection<Long> itemIds) {
+        super("Insufficient stock for items " + itemIds);
+        this.itemIds = itemIds;
+    }
+}
@@ -2,21 +2,26 @@ package ru.mdemidkin.client.service;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.CachePut;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import ru.mdemidkin.client.cache.ItemIdFilter;
+import ru.mdemidkin.client.cache.MissingItems;
+import ru.mdemidkin.client.config.CatalogSearchProperties;
+import ru.mdemidkin.client.dto.CartItemActionDto;
 import ru.mdemidkin.client.dto.CartItemListDto;
 import ru.mdemidkin.client.dto.ItemsSortedSearchPageDto;
-import ru.mdemidkin.client.dto.PagingDto;
 import ru.mdemidkin.client.model.CartItem;
 import ru.mdemidkin.client.model.Item;
 import ru.mdemidkin.client.model.enums.ItemAction;
+import ru.mdemidkin.client.model.enums.SearchMode;
 import ru.mdemidkin.client.model.enums.SortType;
 import ru.mdemidkin.client.repository.ItemRepository;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -24,111 +29,157 @@ public class ItemService {
 
     private final ItemRepository itemRepository;
     private final CartService cartService;
+    private final CatalogService catalogService;
+    private final CatalogSearchProperties searchProperties;
+    private final ItemIdFilter itemIdFilter;
+    private final MissingItems missingItems;
+
+    public Mono<ItemsSortedSearchPageDto> searchItems(String sessionId, String search, SortType sortType,
+                                                     int pageNumber, int pageSize) {
+        return catalogService.searchItems(search, sortType, pageNumber, pageSize)
+                .flatMap(page -> withCartQuantities(sessionId, page));
+    }
 
-    @Cacheable(cacheNames = "searchItems", key = "{#search, #sortType, #pageNumber, #pageSize}")
-    public Mono<ItemsSortedSearchPageDto> searchItems(String search, SortType sortType, int pageNumber, int pageSize) {
-        Mono<Long> totalCount = itemRepository.getCountBySearch(search);
-        Flux<Item> itemFlux = itemRepository.getItemsBySearch(search, sortType, pageNumber, pageSize)
-                .flatMap(this::setItemQuantity);
-
-        return itemFlux.collectList()
-                .zipWith(totalCount)
-                .map(tuple -> {
-                    List<Item> items = tuple.getT1();
-                    long total = tuple.getT2();
-
-                    boolean hasNext = (long) pageNumber * pageSize < total;
-                    boolean hasPrevious = pageNumber > 1;
+    /**
+     * Страница каталога по курсору (keyset-пагинация)
+     *
+     * @param after  курсор, после которого начинается страница
+     * @param before курсор, перед которым заканчивается страница (переход назад)
+     */
+    public Mono<ItemsSortedSearchPageDto> searchItemsByCursor(String sessionId, String search, SortType sortType,
+                                                              int pageNumber, int pageSize,
+                                                              String after, String before) {
+        return catalogService.searchItemsByCursor(search, sortType, pageNumber, pageSize, after, before)
+                .flatMap(page -> withCartQuantities(sessionId, page));
+    }
 
-                    PagingDto pagingDto = new PagingDto(pageNumber, pageSize, hasNext, hasPrevious);
-                    List<List<Item>> tiles = getItemsTile(items);
+    /**
+     * Keyset-пагинация возможна при сортировке по названию или цене.
+     * Выдача полнотекстового поиска без сортировки упорядочена по релевантности и листается через OFFSET
+     */
+    public boolean supportsKeyset(String search, SortType sortType) {
+        return sortType != SortType.NO
+                || search == null || search.isBlank()
+                || searchProperties.getMode() != SearchMode.FULL_TEXT;
+    }
 
-                    return new ItemsSortedSearchPageDto(search, sortType, pagingDto, tiles);
-                });
+    /**
+     * Карточка товара из кеша каталога с количеством из корзины сессии
+     */
+    public Mono<Item> getById(String sessionId, Long id) {
+        return findCatalogItem(id)
+                .flatMap(item -> cartService.findItemById(sessionId, id)
+                        .map(CartItem::getQuantity)
+                        .defaultIfEmpty(0)
+                        .map(quantity -> withCount(item, quantity)));
     }
 
-    @Cacheable(cacheNames = "item", key = "#id")
-    public Mono<Item> getById(Long id) {
-        return itemRepository.findById(id)
-                .flatMap(this::setItemQuantity);
+    /**
+     * Каждое действие - один атомарный запрос к корзине, поэтому одновременные нажатия не теряют изменений.
+     * Id, которых точно нет в каталоге, отклоняются до обращения к корзине и кешу
+     */
+    @CacheEvict(cacheNames = "cartItems", key = "{@cacheGenerations.current('cart'), #sessionId}",
+            condition = "@itemIdFilter.mightContain(#itemId)")
+    public Mono<CartItem> updateCartItem(String sessionId, Long itemId, ItemAction action) {
+        if (!itemIdFilter.mightContain(itemId)) {
+            return Mono.empty();
+        }
+        return switch (action) {
+            case plus -> findCatalogItem(itemId).flatMap(item -> cartService.increment(sessionId, itemId));
+            case minus -> cartService.decrement(sessionId, itemId);
+            case delete -> cartService.remove(sessionId, itemId).then(Mono.empty());
+        };
     }
 
-    @CacheEvict(cacheNames = "cartItems", allEntries = true)
-    public Mono<CartItem> updateCartItem(Long itemId, ItemAction action) {
-        return cartService.findItemById(itemId)
-                .switchIfEmpty(createNewCartItem(itemId, action))
-                .flatMap(cartItem -> {
-                    switch (action) {
-                        case plus:
-                            cartItem.setQuantity(cartItem.getQuantity() + 1);
-                            return cartService.saveOrUpdate(cartItem);
-
-                        case minus:
-                            int quantity = cartItem.getQuantity();
-                            if (quantity > 1) {
-                                cartItem.setQuantity(quantity - 1);
-                                return cartService.saveOrUpdate(cartItem);
-                            } else {
-                                return cartService.delete(cartItem).then(Mono.empty());
-                            }
-
-                        case delete:
-                            return cartService.delete(cartItem).then(Mono.empty());
-
-                        default:
-                            return Mono.empty();
-                    }
-                });
+    /**
+     * Пакетное изменение корзины: действия применяются по порядку одной транзакцией (одним скриптом Redis),
+     * а результат сразу кладется в кеш cartItems вместо сброса записи после каждого действия.
+     * Действия с id, которых нет в каталоге, пропускаются
+     */
+    @CachePut(cacheNames = "cartItems", key = "{@cacheGenerations.current('cart'), #sessionId}")
+    public Mono<CartItemListDto> updateCartItems(String sessionId, List<CartItemActionDto> actions) {
+        List<CartItemActionDto> known = actions.stream()
+                .filter(action -> itemIdFilter.mightContain(action.itemId()))
+                .toList();
+        return Flux.fromIterable(known)
+                .filter(action -> action.action() == ItemAction.plus)
+                .map(CartItemActionDto::itemId)
+                .distinct()
+                .flatMap(this::findCatalogItem)
+                .map(Item::getId)
+                .collect(Collectors.toSet())
+                .map(existing -> known.stream()
+                        .filter(action -> action.action() != ItemAction.plus || existing.contains(action.itemId()))
+                        .toList())
+                .flatMap(valid -> cartService.apply(sessionId, valid))
+                .then(Mono.defer(() -> loadCart(sessionId)));
     }
 
     public Mono<List<Item>> getByOrderId(Long orderId) {
         return itemRepository.findItemsByOrderId(orderId).collectList();
     }
 
-    private Mono<CartItem> createNewCartItem(Long itemId, ItemAction action) {
-        if (action.equals(ItemAction.plus)) {
-            return itemRepository.findById(itemId)
-                    .map(item -> {
-                        CartItem cartItem = new CartItem();
-                        cartItem.setItemId(itemId);
-                        cartItem.setQuantity(0);
-                        return cartItem;
-                    });
-        } else {
+    /**
+     * Товар каталога с защитой от перебора несуществующих id: фильтр Блума отсекает id, которых точно нет,
+     * а подтвержденные промахи ненадолго запоминаются в {@link MissingItems}
+     */
+    private Mono<Item> findCatalogItem(Long id) {
+        if (!itemIdFilter.mightContain(id)) {
             return Mono.empty();
         }
+        return missingItems.isMissing(id)
+                .flatMap(missing -> missing
+                        ? Mono.<Item>empty()
+                        : catalogService.getById(id)
+                        .switchIfEmpty(Mono.fromRunnable(() -> missingItems.markMissing(id))));
     }
 
-    @Cacheable(cacheNames = "cartItems")
-    public Mono<CartItemListDto> getCartItemListDto() {
-        return getItemsFromCart().collectList()
+    /**
+     * Корзина сессии. Ключ кеша содержит id сессии, поэтому покупатели не сбрасывают записи друг друга
+     */
+    @Cacheable(cacheNames = "cartItems", key = "{@cacheGenerations.current('cart'), #sessionId}", sync = true)
+    public Mono<CartItemListDto> getCartItemListDto(String sessionId) {
+        return loadCart(sessionId);
+    }
+
+    private Mono<CartItemListDto> loadCart(String sessionId) {
+        return cartService.getItemsInCart(sessionId).collectList()
                 .map(list -> new CartItemListDto(list, getTotal(list), list.isEmpty()));
     }
 
     /**
-     * Группируем товары по три в ряд (для представления плиткой)
-     *
-     * @param items список товаров на странице
-     * @return плитку 3х3 товаров на странице
+     * Накладывает количество из корзины на страницу каталога одним обращением к корзине
      */
-    private List<List<Item>> getItemsTile(List<Item> items) {
-        List<List<Item>> rows = new ArrayList<>();
-        List<Item> currentRow = null;
-
-        for (int i = 0; i < items.size(); i++) {
-            if (i % 3 == 0) {
-                currentRow = new ArrayList<>();
-                rows.add(currentRow);
-            }
-            currentRow.add(items.get(i));
-        }
-        return rows;
+    private Mono<ItemsSortedSearchPageDto> withCartQuantities(String sessionId, ItemsSortedSearchPageDto page) {
+        List<Long> ids = page.itemsTile().stream()
+                .flatMap(List::stream)
+                .map(Item::getId)
+                .toList();
+        return cartService.getQuantities(sessionId, ids)
+                .map(quantities -> new ItemsSortedSearchPageDto(
+                        page.search(),
+                        page.sortType(),
+                        page.responsePagingDto(),
+                        page.itemsTile().stream()
+                                .map(row -> row.stream()
+                                        .map(item -> withCount(item, quantities.getOrDefault(item.getId(), 0)))
+                                        .toList())
+                                .toList()));
     }
 
-    private Mono<Item> setItemQuantity(Item item) {
-        return cartService.findItemById(item.getId())
-                .doOnNext(cartItem -> item.setCount(cartItem.getQuantity()))
-                .thenReturn(item);
+    /**
+     * Товары лежат в кеше каталога общими экземплярами, поэтому не изменяем их, а копируем
+     */
+    private Item withCount(Item item, int count) {
+        return Item.builder()
+                .id(item.getId())
+                .title(item.getTitle())
+                .description(item.getDescription())
+                .imgPath(item.getImgPath())
+                .price(item.getPrice())
+                .stockCount(item.getStockCount())
+                .count(count)
+                .build();
     }
 
     private Double getTotal(List<Item> items) {
@@ -136,12 +187,4 @@ public class ItemService {
                 .map(i -> (i.getPrice() * i.getCount()))
                 .reduce(0.0, Double::sum);
     }
-
-    private Flux<Item> getItemsFromCart() {
-        return cartService.getAll()
-                .flatMap(cartItem ->
-                        getById(cartItem.getItemId())
-                                .doOnNext(item -> item.setCount(cartItem.getQuantity()))
-                );
-    }
 }
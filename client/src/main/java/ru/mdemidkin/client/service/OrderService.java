@@ -1,24 +1,30 @@
 package ru.mdemidkin.client.service;
 
 import lombok.RequiredArgsConstructor;
-import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
-import org.springframework.cache.annotation.Caching;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import ru.mdemidkin.client.cache.CacheGenerations;
+import ru.mdemidkin.client.cache.CacheScope;
 import ru.mdemidkin.client.dto.CartItemListDto;
 import ru.mdemidkin.client.dto.OrderDto;
+import ru.mdemidkin.client.dto.PageCursor;
 import ru.mdemidkin.client.mapper.OrderMapper;
 import ru.mdemidkin.client.model.Item;
 import ru.mdemidkin.client.model.Order;
 import ru.mdemidkin.client.model.OrderItem;
+import ru.mdemidkin.client.repository.ItemRepository;
 import ru.mdemidkin.client.repository.OrderItemRepository;
 import ru.mdemidkin.client.repository.OrderRepository;
 
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -29,30 +35,75 @@ public class OrderService {
     private final CartService cartService;
     private final OrderItemRepository orderItemRepository;
     private final OrderMapper mapper;
+    private final CacheGenerations cacheGenerations;
+    private final TransactionalOperator transactionalOperator;
+    private final ItemRepository itemRepository;
+
+    /**
+     * Страница истории заказов, от новых к старым
+     *
+     * @param before курсор последнего заказа предыдущей страницы
+     */
+    @Cacheable(cacheNames = "orders", key = "{@cacheGenerations.current('orders'), #before, #pageSize}", sync = true)
+    public Flux<OrderDto> findAll(String before, int pageSize) {
+        return orderRepository.findOrdersWithItems(decodeCursor(before), pageSize);
+    }
 
-    @Cacheable(cacheNames = "orders")
-    public Flux<OrderDto> findAll() {
-        return orderRepository.findAll()
-                .flatMap(order -> itemService.getByOrderId(order.getId())
-                        .map(items -> mapper.toDto(order, items)));
+    public Mono<String> findNextCursor(String before, int pageSize) {
+        return orderRepository.findNextOrdersCursor(decodeCursor(before), pageSize)
+                .map(PageCursor::encode);
     }
 
-    @Cacheable(cacheNames = "order", key = "#id")
+    @Cacheable(cacheNames = "order", key = "#id", sync = true)
     public Mono<OrderDto> findById(Long id) {
         return Mono.zip(orderRepository.findById(id),
                         itemService.getByOrderId(id))
                 .map(t -> mapper.toDto(t.getT1(), t.getT2()));
     }
 
-    @Caching(evict = {
-            @CacheEvict(cacheNames = {"cartItems"}, allEntries = true),
-            @CacheEvict(cacheNames = {"searchItems"}, allEntries = true)})
-    public Mono<Order> createOrder() {
-        return itemService.getCartItemListDto()
+    /**
+     * Первый шаг оформления заказа, до оплаты: отложенные изменения корзины записываются в БД, а остатки всех
+     * товаров корзины списываются отдельной короткой транзакцией. Если какого-то товара не хватает, ничего
+     * не списывается и возвращается {@link InsufficientStockException}, поэтому покупатель не платит за заказ,
+     * который нельзя собрать. Если оплата не прошла, резерв возвращается через {@link #releaseStock(List)}
+     *
+     * @return товары корзины, под которые списан остаток
+     */
+    public Mono<List<Item>> reserveCart(String sessionId) {
+        return cartService.flush(sessionId)
+                .then(itemService.getCartItemListDto(sessionId))
                 .map(CartItemListDto::items)
-                .flatMap(this::buildOrderWithItems)
-                .flatMap(this::saveOrderWithItems)
-                .flatMap(this::clearCart);
+                .flatMap(items -> transactionalOperator.transactional(reserveStock(items))
+                        .thenReturn(items));
+    }
+
+    /**
+     * Возврат на склад остатков, списанных {@link #reserveCart(String)}, когда заказ не оформлен
+     */
+    public Mono<Void> releaseStock(List<Item> items) {
+        if (items.isEmpty()) {
+            return Mono.empty();
+        }
+        return itemRepository.releaseStock(
+                        items.stream().map(Item::getId).toArray(Long[]::new),
+                        items.stream().map(Item::getCount).toArray(Integer[]::new))
+                .then();
+    }
+
+    /**
+     * Оформление оплаченного заказа из зарезервированных товаров меняет только корзину сессии и историю
+     * заказов: очистка корзины сбрасывает записи кеша этой сессии, новый заказ - поколение orders.
+     * Кеш каталога не затрагивается.
+     * <p>
+     * Заказ, его позиции и очистка корзины выполняются одной транзакцией на одном соединении: падение посередине
+     * не оставляет заказа без позиций или заказа при полной корзине. Корзина очищается последней, поэтому
+     * для корзин в Redis, которые в транзакцию не входят, откат возможен только при сбое самого COMMIT
+     */
+    public Mono<Order> createOrder(String sessionId, List<Item> items) {
+        return buildOrderWithItems(items)
+                .flatMap(order -> transactionalOperator.transactional(saveOrderWithItems(order)
+                        .flatMap(saved -> cartService.clearCart(sessionId).thenReturn(saved))))
+                .flatMap(order -> cacheGenerations.bump(CacheScope.ORDERS).thenReturn(order));
     }
 
     private Mono<Order> buildOrderWithItems(List<Item> items) {
@@ -81,20 +132,62 @@ public class OrderService {
                 .sum();
     }
 
+    /**
+     * Строка заказа и один INSERT всех позиций вместо INSERT на каждую позицию
+     */
     private Mono<Order> saveOrderWithItems(Order order) {
         return orderRepository.save(order)
                 .flatMap(savedOrder -> {
-                    for (OrderItem item : order.getOrderItems()) {
-                        item.setOrderId(savedOrder.getId());
+                    List<OrderItem> orderItems = order.getOrderItems();
+                    if (orderItems.isEmpty()) {
+                        return Mono.just(savedOrder);
                     }
+                    orderItems.forEach(item -> item.setOrderId(savedOrder.getId()));
+                    return orderItemRepository.insertAll(savedOrder.getId(),
+                                    orderItems.stream().map(OrderItem::getItemId).toArray(Long[]::new),
+                                    orderItems.stream().map(OrderItem::getQuantity).toArray(Integer[]::new),
+                                    orderItems.stream().map(OrderItem::getPricePerItem).toArray(Double[]::new))
+                            .thenReturn(savedOrder);
+                });
+    }
 
-                    return orderItemRepository.saveAll(order.getOrderItems())
-                            .then(Mono.just(savedOrder));
+    /**
+     * Остатки всех товаров одним условным UPDATE. Товары передаются по возрастанию id, чтобы параллельные
+     * заказы с общими товарами блокировали строки в одном порядке
+     */
+    private Mono<Void> reserveStock(List<Item> items) {
+        if (items.isEmpty()) {
+            return Mono.empty();
+        }
+        List<Item> sorted = items.stream()
+                .sorted(Comparator.comparing(Item::getId))
+                .toList();
+        return itemRepository.reserveStock(
+                        sorted.stream().map(Item::getId).toArray(Long[]::new),
+                        sorted.stream().map(Item::getCount).toArray(Integer[]::new))
+                .collect(Collectors.toSet())
+                .flatMap(reserved -> {
+                    List<Long> shortfall = sorted.stream()
+                            .map(Item::getId)
+                            .filter(itemId -> !reserved.contains(itemId))
+                            .toList();
+                    return shortfall.isEmpty()
+                            ? Mono.<Void>empty()
+                            : Mono.error(new InsufficientStockException(shortfall));
                 });
     }
 
-    private Mono<Order> clearCart(Order order) {
-        return cartService.clearCart().thenReturn(order);
+    private PageCursor decodeCursor(String token) {
+        PageCursor cursor = PageCursor.decode(token);
+        if (cursor == null) {
+            return null;
+        }
+        try {
+            LocalDateTime.parse(cursor.key());
+            return cursor;
+        } catch (DateTimeParseException e) {
+            return null;
+        }
     }
 
 }
@@ -0,0 +1,41 @@
+// Кнопки корзины без перезагрузки страницы. Форма с data-fragment отправляется fetch-запросом, а сервер
+// отвечает только измененными фрагментами (cart-update.html): элементы ответа заменяют элементы страницы
+// с теми же id, а элемент data-fragment, которого нет в ответе, удаляется (товар убран из корзины).
+// При ошибке форма отправляется обычным POST с редиректом, как без скрипта
+document.addEventListener('submit', async (event) => {
+    const form = event.target;
+    if (!form.dataset.fragment) {
+        return;
+    }
+    event.preventDefault();
+    const action = event.submitter ? event.submitter.value : null;
+    try {
+        const response = await fetch(form.action, {
+            method: 'POST',
+            headers: {'X-Requested-With': 'fetch'},
+            body: new URLSearchParams({action: action})
+        });
+        if (!response.ok) {
+            throw new Error(response.statusText);
+        }
+        const template = document.createElement('template');
+        template.innerHTML = await response.text();
+        const target = document.getElementById(form.dataset.fragment);
+        if (target && !template.content.getElementById(form.dataset.fragment)) {
+            target.remove();
+        }
+        template.content.querySelectorAll('[id]').forEach(element => {
+            const current = document.getElementById(element.id);
+            if (current) {
+                current.replaceWith(element);
+            }
+        });
+    } catch (error) {
+        const input = document.createElement('input');
+        input.type = 'hidden';
+        input.name = 'action';
+        input.value = action;
+        form.appendChild(input);
+        form.submit();
+    }
+});
@@ -0,0 +1,118 @@
+package ru.mdemidkin.client.cache;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import ru.mdemidkin.client.dto.CartItemListDto;
+import ru.mdemidkin.client.dto.ItemsSortedSearchPageDto;
+import ru.mdemidkin.client.dto.OrderDto;
+import ru.mdemidkin.client.model.CartItem;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.InstanceOfAssertFactories.list;
+
+class BinaryCacheSerializerTest {
+
+    private final BinaryCacheSerializer serializer = CacheSamples.binarySerializer(CacheCompression.NONE, 0);
+
+    @Test
+    void shouldRoundTripSearchPage() {
+        ItemsSortedSearchPageDto page = CacheSamples.searchPage();
+
+        ItemsSortedSearchPageDto result = (ItemsSortedSearchPageDto) serializer.deserialize(serializer.serialize(page));
+
+        assertThat(result.search()).isEqualTo(page.search());
+        assertThat(result.sortType()).isEqualTo(page.sortType());
+        assertThat(result.responsePagingDto()).isEqualTo(page.responsePagingDto());
+        assertThat(result.itemsTile()).hasSize(4);
+        assertThat(result.itemsTile().get(1).get(2).getTitle()).isEqualTo(page.itemsTile().get(1).get(2).getTitle());
+        assertThat(result.itemsTile().get(1).get(2).getCount()).isEqualTo(page.itemsTile().get(1).get(2).getCount());
+    }
+
+    @Test
+    void shouldRoundTripFluxResultList() {
+        List<OrderDto> orders = CacheSamples.orders();
+
+        Object result = serializer.deserialize(serializer.serialize(orders));
+
+        assertThat(result).asInstanceOf(list(OrderDto.class))
+                .hasSize(10)
+                .first()
+                .satisfies(order -> {
+                    assertThat(order.createdAt()).isEqualTo(orders.get(0).createdAt());
+                    assertThat(order.items()).hasSize(5);
+                });
+    }
+
+    @Test
+    void shouldRoundTripEmptyList() {
+        assertThat(serializer.deserialize(serializer.serialize(List.of()))).isEqualTo(List.of());
+    }
+
+    @Test
+    void shouldRoundTripEnvelope() {
+        CacheEnvelope envelope = new CacheEnvelope(CacheSamples.searchPage(), 1_700_000_000_000L);
+        BinaryCacheSerializer lz4 = CacheSamples.binarySerializer(CacheCompression.LZ4, 256);
+
+        CacheEnvelope result = (CacheEnvelope) lz4.deserialize(lz4.serialize(envelope));
+
+        assertThat(result.getRefreshAt()).isEqualTo(envelope.getRefreshAt());
+        assertThat(((ItemsSortedSearchPageDto) result.getValue()).itemsTile()).hasSize(4);
+    }
+
+    @Test
+    void shouldBeSmallerThanJson() {
+        CartItemListDto cart = CacheSamples.cart();
+
+        byte[] json = CacheSamples.jsonSerializer().serialize(cart);
+        byte[] binary = serializer.serialize(cart);
+
+        assertThat(binary).isNotEmpty();
+        assertThat(binary.length).isLessThan(json.length);
+    }
+
+    @Test
+    void shouldCompressAboveThreshold() {
+        BinaryCacheSerializer lz4 = CacheSamples.binarySerializer(CacheCompression.LZ4, 256);
+        BinaryCacheSerializer zstd = CacheSamples.binarySerializer(CacheCompression.ZSTD, 256);
+        CartItemListDto cart = CacheSamples.cart();
+
+        byte[] plain = serializer.serialize(cart);
+        byte[] lz4Bytes = lz4.serialize(cart);
+        byte[] zstdBytes = zstd.serialize(cart);
+
+        assertThat(lz4Bytes.length).isLessThan(plain.length);
+        assertThat(zstdBytes.length).isLessThan(plain.length);
+        assertThat(((CartItemListDto) lz4.deserialize(lz4Bytes)).items()).hasSize(20);
+        assertThat(((CartItemListDto) zstd.deserialize(zstdBytes)).items()).hasSize(20);
+        // сжатые значения читаются узлом с другой настройкой сжатия
+        assertThat(((CartItemListDto) serializer.deserialize(zstdBytes)).cartTotal()).isEqualTo(cart.cartTotal());
+    }
+
+    @Test
+    void shouldNotCompressBelowThreshold() {
+        BinaryCacheSerializer lz4 = CacheSamples.binarySerializer(CacheCompression.LZ4, 1024);
+        CartItem cartItem = new CartItem(1L, "session-1", 2L, 3);
+
+        byte[] bytes = lz4.serialize(cartItem);
+
+        assertThat(bytes[1]).isEqualTo((byte) CacheCompression.NONE.getId());
+        assertThat(((CartItem) lz4.deserialize(bytes)).getQuantity()).isEqualTo(3);
+    }
+
+    @Test
+    void shouldFallBackToJsonForUnregisteredTypesAndLegacyValues() {
+        RedisSerializer<Object> json = CacheSamples.jsonSerializer();
+        Map<String, Integer> unregistered = new HashMap<>(Map.of("total", 5));
+        CartItem legacy = new CartItem(1L, "session-1", 2L, 3);
+
+        byte[] unregisteredBytes = serializer.serialize(unregistered);
+
+        assertThat(unregisteredBytes[0]).isNotEqualTo(BinaryCacheSerializer.MAGIC);
+        assertThat(serializer.deserialize(unregisteredBytes)).isEqualTo(unregistered);
+        assertThat(((CartItem) serializer.deserialize(json.serialize(legacy))).getItemId()).isEqualTo(2L);
+    }
+}
@@ -0,0 +1,116 @@
+package ru.mdemidkin.client.cache;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.ReactiveValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import reactor.core.Disposables;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.mdemidkin.client.config.AppCacheProperties;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CacheGenerationsTest {
+
+    @Mock
+    private ReactiveStringRedisTemplate redisTemplate;
+
+    @Mock
+    private ReactiveValueOperations<String, String> valueOperations;
+
+    @Mock
+    private CacheInvalidationBus invalidationBus;
+
+    private CacheGenerations generations;
+
+    @BeforeEach
+    void setUp() {
+        generations = new CacheGenerations(redisTemplate, invalidationBus, new AppCacheProperties());
+    }
+
+    @Test
+    void bump_shouldAdvanceScopeAndNotifyOtherNodes() {
+        when(redisTemplate.execute(ArgumentMatchers.<RedisScript<Long>>any(),
+                eq(List.of("intershop:cache:generation:cart")), eq(List.of("0"))))
+                .thenReturn(Flux.just(7L));
+
+        generations.bump(CacheScope.CART).block();
+
+        assertThat(generations.current("cart")).isEqualTo(7L);
+        assertThat(generations.current(CacheScope.CATALOG)).isZero();
+        verify(invalidationBus).publishEvict("generation:CART", "7");
+    }
+
+    @Test
+    void bump_shouldKeepGenerationWhenRedisIsUnavailable() {
+        when(redisTemplate.execute(ArgumentMatchers.<RedisScript<Long>>any(), anyList(), anyList()))
+                .thenReturn(Flux.error(new IllegalStateException("down")));
+
+        generations.bump(CacheScope.ORDERS).block();
+
+        assertThat(generations.current(CacheScope.ORDERS)).isZero();
+    }
+
+    @Test
+    void bump_shouldSendLocalGenerationSoLostCounterDoesNotRestartFromOne() {
+        generations.onInvalidation(new CacheInvalidation("node", "generation:CATALOG", "41"));
+        when(redisTemplate.execute(ArgumentMatchers.<RedisScript<Long>>any(),
+                eq(List.of("intershop:cache:generation:catalog")), eq(List.of("41"))))
+                .thenReturn(Flux.just(42L));
+
+        generations.bump(CacheScope.CATALOG).block();
+
+        assertThat(generations.current(CacheScope.CATALOG)).isEqualTo(42L);
+        verify(invalidationBus).publishEvict("generation:CATALOG", "42");
+    }
+
+    @Test
+    void onInvalidation_shouldOnlyMoveGenerationForward() {
+        generations.onInvalidation(new CacheInvalidation("node", "generation:CATALOG", "5"));
+        generations.onInvalidation(new CacheInvalidation("node", "generation:CATALOG", "3"));
+        generations.onInvalidation(new CacheInvalidation("node", "searchItems", "key"));
+
+        assertThat(generations.current("catalog")).isEqualTo(5L);
+    }
+
+    @Test
+    void afterPropertiesSet_shouldSyncBeforeFirstUse() {
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.get(anyString())).thenReturn(Mono.empty());
+        when(valueOperations.get("intershop:cache:generation:catalog")).thenReturn(Mono.just("7"));
+        when(invalidationBus.listen(any())).thenReturn(Disposables.single());
+
+        generations.afterPropertiesSet();
+        try {
+            assertThat(generations.current(CacheScope.CATALOG)).isEqualTo(7L);
+        } finally {
+            generations.destroy();
+        }
+    }
+
+    @Test
+    void sync_shouldLoadGenerationsFromRedis() {
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.get(anyString())).thenReturn(Mono.empty());
+        when(valueOperations.get("intershop:cache:generation:orders")).thenReturn(Mono.just("12"));
+
+        generations.sync().block();
+
+        assertThat(generations.current(CacheScope.ORDERS)).isEqualTo(12L);
+    }
+}
@@ -0,0 +1,65 @@
+package ru.mdemidkin.client.cache;
+
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import ru.mdemidkin.client.config.RedisConfiguration;
+import ru.mdemidkin.client.dto.CartItemListDto;
+import ru.mdemidkin.client.dto.ItemsSortedSearchPageDto;
+import ru.mdemidkin.client.dto.OrderDto;
+import ru.mdemidkin.client.dto.PagingDto;
+import ru.mdemidkin.client.model.Item;
+import ru.mdemidkin.client.model.enums.SortType;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Значения, которые приложение кладет в Redis, и сериализаторы для их сравнения
+ */
+final class CacheSamples {
+
+    private CacheSamples() {
+    }
+
+    static RedisSerializer<Object> jsonSerializer() {
+        return new GenericJackson2JsonRedisSerializer(
+                new RedisConfiguration().objectMapper(new Jackson2ObjectMapperBuilder()));
+    }
+
+    static BinaryCacheSerializer binarySerializer(CacheCompression compression, int compressionThreshold) {
+        return BinaryCacheSerializer.create(jsonSerializer(), compression, compressionThreshold);
+    }
+
+    static Item item(long id) {
+        return new Item(id, "Беспроводные наушники " + id,
+                "Наушники с активным шумоподавлением и временем работы до 30 часов",
+                "images/item" + id + ".jpg", 4990.0 + id, 100, (int) (id % 3));
+    }
+
+    static ItemsSortedSearchPageDto searchPage() {
+        List<List<Item>> tile = new ArrayList<>();
+        for (int row = 0; row < 4; row++) {
+            tile.add(IntStream.range(0, 3)
+                    .mapToObj(column -> item(row * 3L + column + 1))
+                    .toList());
+        }
+        return new ItemsSortedSearchPageDto("наушники", SortType.ALPHA,
+                new PagingDto(2, 12, true, true, "MTI6dGl0bGU", "MTM6dGl0bGU"), tile);
+    }
+
+    static CartItemListDto cart() {
+        List<Item> items = IntStream.rangeClosed(1, 20).mapToObj(CacheSamples::item).toList();
+        return new CartItemListDto(items, 99_800.0, false);
+    }
+
+    static List<OrderDto> orders() {
+        return IntStream.rangeClosed(1, 10)
+                .mapToObj(order -> new OrderDto((long) order, LocalDateTime.of(2025, 5, order, 12, 0),
+                        24_950.0,
+                        IntStream.rangeClosed(1, 5).mapToObj(CacheSamples::item).toList()))
+                .toList();
+    }
+}
@@ -0,0 +1,75 @@
+package ru.mdemidkin.client.cache;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH: сериализация и десериализация значений кеша в JSON и бинарном формате.
+ * Запускается из {@link CacheSerializationBenchmarkTest}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CacheSerializationBenchmark {
+
+    @Param({"json", "binary", "binary_lz4", "binary_zstd"})
+    public String format;
+
+    @Param({"searchPage", "cart", "orders"})
+    public String value;
+
+    private RedisSerializer<Object> serializer;
+    private Object sample;
+    private byte[] bytes;
+
+    @Setup
+    public void setUp() {
+        serializer = serializer(format);
+        sample = sample(value);
+        bytes = serializer.serialize(sample);
+    }
+
+    @Benchmark
+    public byte[] serialize() {
+        return serializer.serialize(sample);
+    }
+
+    @Benchmark
+    public Object deserialize() {
+        return serializer.deserialize(bytes);
+    }
+
+    static RedisSerializer<Object> serializer(String format) {
+        return switch (format) {
+            case "json" -> CacheSamples.jsonSerializer();
+            case "binary" -> CacheSamples.binarySerializer(CacheCompression.NONE, Integer.MAX_VALUE);
+            case "binary_lz4" -> CacheSamples.binarySerializer(CacheCompression.LZ4, 1024);
+            case "binary_zstd" -> CacheSamples.binarySerializer(CacheCompression.ZSTD, 1024);
+            default -> throw new IllegalArgumentException(format);
+        };
+    }
+
+    static Object sample(String value) {
+        return switch (value) {
+            case "searchPage" -> CacheSamples.searchPage();
+            case "cart" -> CacheSamples.cart();
+            case "orders" -> CacheSamples.orders();
+            default -> throw new IllegalArgumentException(value);
+        };
+    }
+}
@@ -0,0 +1,43 @@
+package ru.mdemidkin.client.cache;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Размер значений кеша и время сериализации в JSON и бинарном формате.
+ * Запуск: gradle :client:benchmark
+ */
+@Tag("benchmark")
+class CacheSerializationBenchmarkTest {
+
+    private static final List<String> FORMATS = List.of("json", "binary", "binary_lz4", "binary_zstd");
+    private static final List<String> VALUES = List.of("searchPage", "cart", "orders");
+
+    @Test
+    void compareSizes() {
+        System.out.printf("%-12s %10s %10s %12s %12s%n", "value", "json, B", "binary, B", "lz4, B", "zstd, B");
+        for (String value : VALUES) {
+            Object sample = CacheSerializationBenchmark.sample(value);
+            int[] sizes = FORMATS.stream()
+                    .mapToInt(format -> CacheSerializationBenchmark.serializer(format).serialize(sample).length)
+                    .toArray();
+            System.out.printf("%-12s %10d %10d %12d %12d%n", value, sizes[0], sizes[1], sizes[2], sizes[3]);
+            assertThat(sizes[1]).isLessThan(sizes[0]);
+        }
+    }
+
+    @Test
+    void compareSerializationTime() throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(CacheSerializationBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+}
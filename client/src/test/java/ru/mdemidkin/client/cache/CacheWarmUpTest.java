@@ -0,0 +1,102 @@
+package ru.mdemidkin.client.cache;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.boot.DefaultApplicationArguments;
+import org.springframework.boot.actuate.health.Status;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.mdemidkin.client.config.AppCacheProperties;
+import ru.mdemidkin.client.dto.ItemsSortedSearchPageDto;
+import ru.mdemidkin.client.dto.PagingDto;
+import ru.mdemidkin.client.model.Item;
+import ru.mdemidkin.client.model.enums.SortType;
+import ru.mdemidkin.client.repository.OrderItemRepository;
+import ru.mdemidkin.client.service.CatalogService;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CacheWarmUpTest {
+
+    @Mock
+    private CatalogService catalogService;
+
+    @Mock
+    private OrderItemRepository orderItemRepository;
+
+    private AppCacheProperties properties;
+
+    @BeforeEach
+    void setUp() {
+        properties = new AppCacheProperties();
+        properties.getWarmUp().setPages(2);
+        properties.getWarmUp().setTopItems(2);
+    }
+
+    @Test
+    void run_shouldFollowCursorsAndLoadTopItemsBeforeReportingUp() {
+        for (SortType sortType : SortType.values()) {
+            when(catalogService.searchItemsByCursor("", sortType, 1, 10, null, null))
+                    .thenReturn(Mono.just(page(1, "next-" + sortType)));
+            when(catalogService.searchItemsByCursor("", sortType, 2, 10, "next-" + sortType, null))
+                    .thenReturn(Mono.just(page(2, "last-" + sortType)));
+        }
+        when(orderItemRepository.findTopOrderedItemIds(any(LocalDateTime.class), eq(2)))
+                .thenReturn(Flux.just(5L, 7L));
+        when(catalogService.getById(5L)).thenReturn(Mono.just(Item.builder().id(5L).build()));
+        when(catalogService.getById(7L)).thenReturn(Mono.just(Item.builder().id(7L).build()));
+        CacheWarmUp warmUp = new CacheWarmUp(catalogService, orderItemRepository, properties);
+
+        assertThat(warmUp.health().getStatus()).isEqualTo(Status.OUT_OF_SERVICE);
+        warmUp.run(new DefaultApplicationArguments());
+
+        assertThat(warmUp.health().getStatus()).isEqualTo(Status.UP);
+        verify(catalogService, never()).searchItemsByCursor(eq(""), any(), eq(3), anyInt(), any(), isNull());
+        verify(catalogService).getById(5L);
+        verify(catalogService).getById(7L);
+    }
+
+    @Test
+    void run_shouldReportUpWhenWarmUpFails() {
+        when(catalogService.searchItemsByCursor(eq(""), any(), eq(1), eq(10), isNull(), isNull()))
+                .thenReturn(Mono.error(new IllegalStateException("db down")));
+        when(orderItemRepository.findTopOrderedItemIds(any(LocalDateTime.class), anyInt()))
+                .thenReturn(Flux.error(new IllegalStateException("db down")));
+        CacheWarmUp warmUp = new CacheWarmUp(catalogService, orderItemRepository, properties);
+
+        warmUp.run(new DefaultApplicationArguments());
+
+        assertThat(warmUp.health().getStatus()).isEqualTo(Status.UP);
+    }
+
+    @Test
+    void run_shouldSkipWhenDisabled() {
+        properties.getWarmUp().setEnabled(false);
+        CacheWarmUp warmUp = new CacheWarmUp(catalogService, orderItemRepository, properties);
+
+        warmUp.run(new DefaultApplicationArguments());
+
+        assertThat(warmUp.health().getStatus()).isEqualTo(Status.UP);
+        verifyNoInteractions(catalogService, orderItemRepository);
+    }
+
+    private static ItemsSortedSearchPageDto page(int pageNumber, String nextCursor) {
+        return new ItemsSortedSearchPageDto("", SortType.NO,
+                new PagingDto(pageNumber, 10, true, pageNumber > 1, nextCursor, null), List.of());
+    }
+}
@@ -0,0 +1,57 @@
+package ru.mdemidkin.client.cache;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.mdemidkin.client.config.AppCacheProperties;
+import ru.mdemidkin.client.model.Item;
+import ru.mdemidkin.client.repository.ItemRepository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ItemIdFilterTest {
+
+    @Mock
+    private ItemRepository itemRepository;
+
+    @Mock
+    private CacheInvalidationBus invalidationBus;
+
+    private ItemIdFilter itemIdFilter;
+
+    @BeforeEach
+    void setUp() {
+        itemIdFilter = new ItemIdFilter(itemRepository, invalidationBus, new AppCacheProperties());
+        when(itemRepository.findAllIds()).thenReturn(Flux.just(1L, 2L));
+        itemIdFilter.rebuild().block();
+    }
+
+    @Test
+    void onAfterSave_shouldAddIdAndNotifyOtherNodes() {
+        Item item = Item.builder().id(3L).build();
+
+        Mono.from(itemIdFilter.onAfterSave(item, null, null)).block();
+
+        assertThat(itemIdFilter.mightContain(3L)).isTrue();
+        verify(invalidationBus).publishEvict("itemIds", "3");
+    }
+
+    @Test
+    void onInvalidation_shouldAddIdSavedOnOtherNodeWithoutRebuild() {
+        assertThat(itemIdFilter.mightContain(3L)).isFalse();
+
+        itemIdFilter.onInvalidation(new CacheInvalidation("node", "itemIds", "3"));
+        itemIdFilter.onInvalidation(new CacheInvalidation("node", "generation:CATALOG", "7"));
+
+        assertThat(itemIdFilter.mightContain(3L)).isTrue();
+        verify(itemRepository, times(1)).findAllIds();
+    }
+}
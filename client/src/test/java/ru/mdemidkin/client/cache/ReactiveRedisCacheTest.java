@@ -0,0 +1,106 @@
+package ru.mdemidkin.client.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.Cache;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.ReactiveValueOperations;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ReactiveRedisCacheTest {
+
+    private static final Duration TTL = Duration.ofMinutes(10);
+
+    @Mock
+    private ReactiveRedisTemplate<String, byte[]> redisTemplate;
+
+    @Mock
+    private ReactiveValueOperations<String, byte[]> valueOperations;
+
+    private final RedisSerializer<Object> serializer = RedisSerializer.java();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private ReactiveRedisCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new ReactiveRedisCache("item", redisTemplate, serializer, TTL,
+                new CacheMetrics("item", meterRegistry));
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+    }
+
+    @Test
+    void retrieve_shouldReturnCachedValueWithoutLoading() {
+        when(valueOperations.get("item::1")).thenReturn(Mono.just(serializer.serialize("cached")));
+        AtomicInteger loads = new AtomicInteger();
+
+        String value = cache.retrieve(1L, () -> {
+            loads.incrementAndGet();
+            return CompletableFuture.completedFuture("loaded");
+        }).join();
+
+        assertThat(value).isEqualTo("cached");
+        assertThat(loads).hasValue(0);
+    }
+
+    @Test
+    void retrieve_shouldLoadAndStoreOnMiss() {
+        when(valueOperations.get("item::1")).thenReturn(Mono.empty());
+        when(valueOperations.set(eq("item::1"), any(byte[].class), eq(TTL))).thenReturn(Mono.just(true));
+
+        String value = cache.retrieve(1L, () -> CompletableFuture.completedFuture("loaded")).join();
+
+        assertThat(value).isEqualTo("loaded");
+        verify(valueOperations).set(eq("item::1"), any(byte[].class), eq(TTL));
+    }
+
+    @Test
+    void retrieve_shouldNotStoreNullValue() {
+        when(valueOperations.get("item::1")).thenReturn(Mono.empty());
+
+        Object value = cache.retrieve(1L, () -> CompletableFuture.completedFuture(null)).join();
+
+        assertThat(value).isNull();
+        verify(valueOperations, never()).set(any(), any(), any(Duration.class));
+    }
+
+    @Test
+    void retrieve_shouldWrapValueAndRecordPayloadSize() {
+        byte[] payload = serializer.serialize("cached");
+        when(valueOperations.get("item::1")).thenReturn(Mono.just(payload));
+
+        Object result = cache.retrieve(1L).join();
+
+        assertThat(result).isInstanceOf(Cache.ValueWrapper.class);
+        assertThat(((Cache.ValueWrapper) result).get()).isEqualTo("cached");
+        assertThat(meterRegistry.get("cache.payload.size").tags("cache", "item", "operation", "read")
+                .summary().totalAmount()).isEqualTo(payload.length);
+    }
+
+    @Test
+    void put_shouldWriteWithTtl() {
+        when(valueOperations.set(eq("item::1"), any(byte[].class), eq(TTL))).thenReturn(Mono.just(true));
+
+        cache.put(1L, "value");
+
+        verify(valueOperations).set(eq("item::1"), any(byte[].class), eq(TTL));
+        assertThat(meterRegistry.get("cache.payload.size").tags("cache", "item", "operation", "write")
+                .summary().count()).isEqualTo(1);
+    }
+}
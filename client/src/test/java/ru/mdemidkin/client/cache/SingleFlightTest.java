@@ -0,0 +1,72 @@
+package ru.mdemidkin.client.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SingleFlightTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final SingleFlight singleFlight = new SingleFlight("searchItems", meterRegistry);
+
+    @Test
+    void execute_shouldShareInFlightLoadAndCountCoalescedMisses() {
+        CompletableFuture<String> load = new CompletableFuture<>();
+        AtomicInteger loads = new AtomicInteger();
+        Supplier<CompletableFuture<String>> loader = () -> {
+            loads.incrementAndGet();
+            return load;
+        };
+
+        CompletableFuture<String> first = singleFlight.execute("key", loader);
+        CompletableFuture<String> second = singleFlight.execute("key", loader);
+        CompletableFuture<String> third = singleFlight.execute("key", loader);
+        load.complete("value");
+
+        assertThat(first.join()).isEqualTo("value");
+        assertThat(second.join()).isEqualTo("value");
+        assertThat(third.join()).isEqualTo("value");
+        assertThat(loads).hasValue(1);
+        assertThat(meterRegistry.counter("cache.single-flight.loads", "cache", "searchItems").count()).isEqualTo(1);
+        assertThat(meterRegistry.counter("cache.single-flight.coalesced", "cache", "searchItems").count()).isEqualTo(2);
+    }
+
+    @Test
+    void execute_shouldStartNewLoadAfterCompletion() {
+        AtomicInteger loads = new AtomicInteger();
+        Supplier<CompletableFuture<Integer>> loader = () -> CompletableFuture.completedFuture(loads.incrementAndGet());
+
+        assertThat(singleFlight.execute("key", loader).join()).isEqualTo(1);
+        assertThat(singleFlight.execute("key", loader).join()).isEqualTo(2);
+    }
+
+    @Test
+    void execute_shouldNotCancelLoadForOtherCallers() {
+        CompletableFuture<String> load = new CompletableFuture<>();
+
+        CompletableFuture<String> first = singleFlight.execute("key", () -> load);
+        CompletableFuture<String> second = singleFlight.execute("key", () -> load);
+        first.cancel(true);
+        load.complete("value");
+
+        assertThat(second.join()).isEqualTo("value");
+    }
+
+    @Test
+    void execute_shouldPropagateLoadErrorToAllCallers() {
+        CompletableFuture<String> load = new CompletableFuture<>();
+
+        CompletableFuture<String> first = singleFlight.execute("key", () -> load);
+        CompletableFuture<String> second = singleFlight.execute("key", () -> load);
+        load.completeExceptionally(new IllegalStateException("db"));
+
+        assertThatThrownBy(first::join).hasCauseInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(second::join).hasCauseInstanceOf(IllegalStateException.class);
+    }
+}
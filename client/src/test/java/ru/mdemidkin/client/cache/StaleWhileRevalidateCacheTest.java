@@ -0,0 +1,119 @@
+package ru.mdemidkin.client.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class StaleWhileRevalidateCacheTest {
+
+    @Mock
+    private Clock clock;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ConcurrentMapCache delegate = new ConcurrentMapCache("searchItems");
+    private final AtomicInteger loads = new AtomicInteger();
+    private final Supplier<CompletableFuture<String>> loader =
+            () -> CompletableFuture.completedFuture("page-" + loads.incrementAndGet());
+
+    private StaleWhileRevalidateCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new StaleWhileRevalidateCache(delegate, Duration.ofMinutes(5), Schedulers.immediate(),
+                clock, meterRegistry);
+    }
+
+    @Test
+    void retrieve_shouldLoadOnMissAndStoreEnvelope() {
+        when(clock.millis()).thenReturn(0L);
+
+        String value = cache.retrieve("key", loader).join();
+
+        assertThat(value).isEqualTo("page-1");
+        assertThat(delegate.get("key").get()).isInstanceOf(CacheEnvelope.class);
+        assertThat(cache.get("key", String.class)).isEqualTo("page-1");
+    }
+
+    @Test
+    void retrieve_shouldServeFreshValueWithoutLoading() {
+        when(clock.millis()).thenReturn(0L, Duration.ofMinutes(4).toMillis());
+        cache.retrieve("key", loader).join();
+
+        String value = cache.retrieve("key", loader).join();
+
+        assertThat(value).isEqualTo("page-1");
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    void retrieve_shouldServeStaleValueAndRefreshInBackground() {
+        when(clock.millis()).thenReturn(0L, Duration.ofMinutes(6).toMillis());
+        cache.retrieve("key", loader).join();
+
+        String stale = cache.retrieve("key", loader).join();
+
+        assertThat(stale).isEqualTo("page-1");
+        assertThat(loads).hasValue(2);
+        assertThat(cache.get("key", String.class)).isEqualTo("page-2");
+        assertThat(meterRegistry.counter("cache.refreshes", "cache", "searchItems", "result", "success").count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void retrieve_shouldKeepStaleValueWhenRefreshFails() {
+        when(clock.millis()).thenReturn(0L, Duration.ofMinutes(6).toMillis());
+        cache.retrieve("key", loader).join();
+
+        String stale = cache.retrieve("key",
+                () -> CompletableFuture.<String>failedFuture(new IllegalStateException("db"))).join();
+
+        assertThat(stale).isEqualTo("page-1");
+        assertThat(cache.get("key", String.class)).isEqualTo("page-1");
+        assertThat(meterRegistry.counter("cache.refreshes", "cache", "searchItems", "result", "failure").count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void retrieve_shouldCallRefreshLoaderOnRefreshScheduler() throws InterruptedException {
+        Scheduler refreshScheduler = Schedulers.newSingle("cache-refresh-test");
+        try {
+            cache = new StaleWhileRevalidateCache(delegate, Duration.ofMinutes(5), refreshScheduler,
+                    clock, meterRegistry);
+            when(clock.millis()).thenReturn(0L, Duration.ofMinutes(6).toMillis());
+            cache.retrieve("key", loader).join();
+            AtomicReference<String> loaderThread = new AtomicReference<>();
+            CountDownLatch refreshed = new CountDownLatch(1);
+
+            String stale = cache.retrieve("key", () -> {
+                loaderThread.set(Thread.currentThread().getName());
+                refreshed.countDown();
+                return CompletableFuture.completedFuture("page-2");
+            }).join();
+
+            assertThat(stale).isEqualTo("page-1");
+            assertThat(refreshed.await(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(loaderThread.get()).startsWith("cache-refresh-test");
+        } finally {
+            refreshScheduler.dispose();
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package ru.mdemidkin.client.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class TwoLevelCacheTest {
+
+    @Mock
+    private CacheInvalidationBus invalidationBus;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private Cache remote;
+    private TwoLevelCache cache;
+
+    @BeforeEach
+    void setUp() {
+        remote = spy(new ConcurrentMapCache("item"));
+        cache = new TwoLevelCache("item",
+                Caffeine.newBuilder().maximumSize(10).build(),
+                remote,
+                invalidationBus,
+                new SingleFlight("item", meterRegistry),
+                null,
+                new CacheMetrics("item", meterRegistry));
+    }
+
+    @Test
+    void retrieve_shouldServeRepeatedReadsFromLocalCache() {
+        remote.put(1L, "value");
+
+        Object first = cache.retrieve(1L).join();
+        Object second = cache.retrieve(1L).join();
+
+        assertThat(((Cache.ValueWrapper) first).get()).isEqualTo("value");
+        assertThat(((Cache.ValueWrapper) second).get()).isEqualTo("value");
+        verify(remote, times(1)).retrieve(1L);
+    }
+
+    @Test
+    void retrieveWithLoader_shouldCacheLoadedValueLocally() {
+        Object loaded = cache.retrieve(List.of("", 1), () -> CompletableFuture.completedFuture("page")).join();
+        Object cached = cache.retrieve(List.of("", 1), () -> CompletableFuture.completedFuture("other")).join();
+
+        assertThat(loaded).isEqualTo("page");
+        assertThat(cached).isEqualTo("page");
+    }
+
+    @Test
+    void retrieveWithLoader_shouldLoadOnceForConcurrentMisses() {
+        CompletableFuture<String> load = new CompletableFuture<>();
+        AtomicInteger loads = new AtomicInteger();
+        Supplier<CompletableFuture<String>> loader = () -> {
+            loads.incrementAndGet();
+            return load;
+        };
+
+        CompletableFuture<String> first = cache.retrieve(List.of("", 1), loader);
+        CompletableFuture<String> second = cache.retrieve(List.of("", 1), loader);
+        load.complete("page");
+
+        assertThat(first.join()).isEqualTo("page");
+        assertThat(second.join()).isEqualTo("page");
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    void retrieveWithLoader_shouldCountHitsMissesAndLoads() {
+        remote.put("remote", "value");
+        Supplier<CompletableFuture<String>> loader = () -> CompletableFuture.completedFuture("page");
+
+        cache.retrieve("missing", loader).join();
+        cache.retrieve("missing", loader).join();
+        cache.retrieve("remote", loader).join();
+
+        assertThat(gets("miss", "remote")).isEqualTo(1);
+        assertThat(gets("hit", "local")).isEqualTo(1);
+        assertThat(gets("hit", "remote")).isEqualTo(1);
+        assertThat(meterRegistry.get("cache.loads").tags("cache", "item", "result", "success").timer().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void evict_shouldClearBothLevelsAndNotifyOtherNodes() {
+        cache.put(1L, "value");
+
+        cache.evict(1L);
+
+        assertThat(cache.get(1L)).isNull();
+        assertThat(remote.get(1L)).isNull();
+        verify(invalidationBus).publishEvict("item", "1");
+    }
+
+    @Test
+    void evictLocal_shouldFallBackToRemoteValue() {
+        cache.put(1L, "stale");
+        remote.put(1L, "fresh");
+
+        cache.evictLocal("1");
+
+        assertThat(cache.get(1L, String.class)).isEqualTo("fresh");
+    }
+
+    @Test
+    void clear_shouldNotifyOtherNodes() {
+        cache.clear();
+
+        verify(invalidationBus).publishClear("item");
+    }
+
+    private double gets(String result, String level) {
+        return meterRegistry.get("cache.gets")
+                .tags("cache", "item", "result", result, "level", level)
+                .counter()
+                .count();
+    }
+}
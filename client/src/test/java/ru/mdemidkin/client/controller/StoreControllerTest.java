@@ -1,6 +1,7 @@
 package ru.mdemidkin.client.controller;
 
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
@@ -10,14 +11,17 @@ import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import ru.mdemidkin.client.dto.CartItemActionDto;
 import ru.mdemidkin.client.dto.CartItemListDto;
 import ru.mdemidkin.client.dto.ItemsSortedSearchPageDto;
 import ru.mdemidkin.client.dto.OrderDto;
 import ru.mdemidkin.client.dto.PagingDto;
+import ru.mdemidkin.client.model.CartItem;
 import ru.mdemidkin.client.model.Item;
 import ru.mdemidkin.client.model.Order;
 import ru.mdemidkin.client.model.enums.ItemAction;
 import ru.mdemidkin.client.model.enums.SortType;
+import ru.mdemidkin.client.service.InsufficientStockException;
 import ru.mdemidkin.client.service.ItemService;
 import ru.mdemidkin.client.service.OrderService;
 import ru.mdemidkin.client.service.PaymentService;
@@ -25,10 +29,17 @@ import ru.mdemidkin.client.service.PaymentService;
 import java.time.LocalDateTime;
 import java.util.List;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 @WebFluxTest(controllers = StoreController.class)
@@ -65,8 +76,9 @@ class StoreControllerTest {
                 pagingDto,
                 List.of(List.of(item)));
 
-        when(itemService.searchItems(anyString(), any(SortType.class), anyInt(), anyInt()))
+        when(itemService.searchItems(anyString(), anyString(), any(SortType.class), anyInt(), anyInt()))
                 .thenReturn(Mono.just(searchResult));
+        stubEmptyCart();
 
         webTestClient.get()
                 .uri("/main/items?search=test&sort=NO&pageNumber=1&pageSize=10")
@@ -85,8 +97,9 @@ class StoreControllerTest {
                 pagingDto,
                 List.of(List.of(item)));
 
-        when(itemService.searchItems("", SortType.NO, 1, 10))
+        when(itemService.searchItems(anyString(), eq(""), eq(SortType.NO), eq(1), eq(10)))
                 .thenReturn(Mono.just(searchResult));
+        stubEmptyCart();
 
         webTestClient.get()
                 .uri("/main/items")
@@ -94,9 +107,80 @@ class StoreControllerTest {
                 .expectStatus().isOk();
     }
 
+    @Test
+    void shouldGetItemsByCursor() {
+        Item item = createTestItem(1L, "Test Item", 10.0);
+        PagingDto pagingDto = new PagingDto(2, 10, false, true, null, "prev");
+        ItemsSortedSearchPageDto searchResult = new ItemsSortedSearchPageDto(
+                "",
+                SortType.ALPHA,
+                pagingDto,
+                List.of(List.of(item)));
+
+        when(itemService.supportsKeyset("", SortType.ALPHA)).thenReturn(true);
+        when(itemService.searchItemsByCursor(anyString(), eq(""), eq(SortType.ALPHA), eq(2), eq(10), eq("next"), isNull()))
+                .thenReturn(Mono.just(searchResult));
+        stubEmptyCart();
+
+        webTestClient.get()
+                .uri("/main/items?sort=ALPHA&pageNumber=2&after=next")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class)
+                .value(body -> assertThat(body).contains("before=prev"));
+    }
+
+    @Test
+    void shouldRedirectPageWithoutCursorToFirstPage() {
+        when(itemService.supportsKeyset("", SortType.ALPHA)).thenReturn(true);
+
+        webTestClient.get()
+                .uri("/main/items?sort=ALPHA&pageNumber=3&pageSize=20")
+                .exchange()
+                .expectStatus().is3xxRedirection()
+                .expectHeader().location("/main/items?search=&sort=ALPHA&pageSize=20");
+
+        verify(itemService, never()).searchItems(anyString(), anyString(), any(SortType.class), anyInt(), anyInt());
+        verify(itemService, never()).searchItemsByCursor(anyString(), anyString(), any(SortType.class), anyInt(),
+                anyInt(), any(), any());
+    }
+
+    @Test
+    void shouldClampPageSizeToAllowedValues() {
+        ItemsSortedSearchPageDto searchResult = new ItemsSortedSearchPageDto(
+                "", SortType.NO, new PagingDto(1, 100, false, false), List.of());
+        when(itemService.searchItems(anyString(), eq(""), eq(SortType.NO), eq(1), eq(100)))
+                .thenReturn(Mono.just(searchResult));
+        stubEmptyCart();
+
+        webTestClient.get()
+                .uri("/main/items?pageSize=100000")
+                .exchange()
+                .expectStatus().isOk();
+    }
+
+    @Test
+    void shouldLinkOffsetPagesOfRelevanceSearch() {
+        Item item = createTestItem(1L, "Test Item", 10.0);
+        ItemsSortedSearchPageDto searchResult = new ItemsSortedSearchPageDto(
+                "test", SortType.NO, new PagingDto(2, 10, true, true), List.of(List.of(item)));
+        when(itemService.searchItems(anyString(), eq("test"), eq(SortType.NO), eq(2), eq(10)))
+                .thenReturn(Mono.just(searchResult));
+        stubEmptyCart();
+
+        webTestClient.get()
+                .uri("/main/items?search=test&pageNumber=2")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class)
+                .value(body -> assertThat(body)
+                        .contains("pageNumber=1", "pageNumber=3")
+                        .doesNotContain("name=\"pageNumber\""));
+    }
+
     @Test
     void shouldModifyItemInCart() {
-        when(itemService.updateCartItem(eq(1L), eq(ItemAction.plus)))
+        when(itemService.updateCartItem(anyString(), eq(1L), eq(ItemAction.plus)))
                 .thenReturn(Mono.empty());
 
         MultiValueMap<String, String> formData = new LinkedMultiValueMap<>();
@@ -111,6 +195,78 @@ class StoreControllerTest {
                 .expectHeader().location("/main/items");
     }
 
+    @Test
+    void shouldGetItemsWithCartBadge() {
+        Item item = createTestItem(1L, "Test Item", 10.0);
+        item.setCount(2);
+        ItemsSortedSearchPageDto searchResult = new ItemsSortedSearchPageDto(
+                "", SortType.NO, new PagingDto(1, 10, false, false), List.of(List.of(item)));
+        when(itemService.searchItems(anyString(), eq(""), eq(SortType.NO), eq(1), eq(10)))
+                .thenReturn(Mono.just(searchResult));
+        when(itemService.getCartItemListDto(anyString()))
+                .thenReturn(Mono.just(new CartItemListDto(List.of(item), 20.0, false)));
+
+        webTestClient.get()
+                .uri("/main/items")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class)
+                .value(body -> assertThat(body)
+                        .contains("id=\"cart-badge\"", "(2)", "data-fragment=\"item-1\"", "/cart.js"));
+    }
+
+    @Test
+    void shouldReturnItemFragmentForScriptedClick() {
+        Item item = createTestItem(1L, "Test Item", 10.0);
+        item.setCount(3);
+        when(itemService.updateCartItem(anyString(), eq(1L), eq(ItemAction.plus)))
+                .thenReturn(Mono.just(CartItem.builder().itemId(1L).quantity(3).build()));
+        when(itemService.getCartItemListDto(anyString()))
+                .thenReturn(Mono.just(new CartItemListDto(List.of(item), 30.0, false)));
+
+        MultiValueMap<String, String> formData = new LinkedMultiValueMap<>();
+        formData.add("action", "plus");
+
+        webTestClient.post()
+                .uri("/main/items/1")
+                .header("X-Requested-With", "fetch")
+                .contentType(MediaType.APPLICATION_FORM_URLENCODED)
+                .bodyValue(formData)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class)
+                .value(body -> assertThat(body)
+                        .contains("id=\"item-1\"", "<span>3</span>", "id=\"cart-badge\"", "(3)")
+                        .doesNotContain("<html", "Найти"));
+
+        verify(itemService, never()).searchItems(anyString(), anyString(), any(SortType.class), anyInt(), anyInt());
+        verify(itemService).updateCartItem(anyString(), eq(1L), eq(ItemAction.plus));
+        verify(itemService, never()).updateCartItems(anyString(), anyList());
+    }
+
+    @Test
+    void shouldReturnEmptyCartLineFragmentForRemovedItem() {
+        when(itemService.updateCartItem(anyString(), eq(1L), eq(ItemAction.delete)))
+                .thenReturn(Mono.empty());
+        when(itemService.getCartItemListDto(anyString()))
+                .thenReturn(Mono.just(new CartItemListDto(List.of(), 0.0, true)));
+
+        MultiValueMap<String, String> formData = new LinkedMultiValueMap<>();
+        formData.add("action", "delete");
+
+        webTestClient.post()
+                .uri("/cart/items/1")
+                .header("X-Requested-With", "fetch")
+                .contentType(MediaType.APPLICATION_FORM_URLENCODED)
+                .bodyValue(formData)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class)
+                .value(body -> assertThat(body)
+                        .contains("id=\"cart-summary\"", "Итого: 0.0 руб.")
+                        .doesNotContain("id=\"item-1\"", "Купить"));
+    }
+
     @Test
     void shouldGetCartItems() {
         Item item = createTestItem(1L, "Test Item", 10.0);
@@ -119,7 +275,7 @@ class StoreControllerTest {
                 10.00,
                 false);
 
-        when(itemService.getCartItemListDto())
+        when(itemService.getCartItemListDto(anyString()))
                 .thenReturn(Mono.just(cartDto));
 
         webTestClient.get()
@@ -128,9 +284,35 @@ class StoreControllerTest {
                 .expectStatus().isOk();
     }
 
+    @Test
+    void shouldBindCartToSession() {
+        when(itemService.getCartItemListDto(anyString()))
+                .thenReturn(Mono.just(new CartItemListDto(List.of(), 0.0, true)));
+
+        String sessionCookie = webTestClient.get()
+                .uri("/cart/items")
+                .exchange()
+                .expectStatus().isOk()
+                .expectCookie().exists("SESSION")
+                .returnResult(String.class)
+                .getResponseCookies()
+                .getFirst("SESSION")
+                .getValue();
+
+        webTestClient.get()
+                .uri("/cart/items")
+                .cookie("SESSION", sessionCookie)
+                .exchange()
+                .expectStatus().isOk();
+
+        ArgumentCaptor<String> sessionIds = ArgumentCaptor.forClass(String.class);
+        verify(itemService, times(2)).getCartItemListDto(sessionIds.capture());
+        assertThat(sessionIds.getAllValues()).containsOnly(sessionCookie);
+    }
+
     @Test
     void shouldModifyCartItem() {
-        when(itemService.updateCartItem(eq(1L), eq(ItemAction.minus)))
+        when(itemService.updateCartItem(anyString(), eq(1L), eq(ItemAction.minus)))
                 .thenReturn(Mono.empty());
 
         MultiValueMap<String, String> formData = new LinkedMultiValueMap<>();
@@ -145,11 +327,46 @@ class StoreControllerTest {
                 .expectHeader().location("/cart/items");
     }
 
+    @Test
+    void shouldModifyCartItemsInBatch() {
+        Item item = createTestItem(1L, "Test Item", 10.0);
+        List<CartItemActionDto> actions = List.of(
+                new CartItemActionDto(1L, ItemAction.plus),
+                new CartItemActionDto(2L, ItemAction.delete));
+        when(itemService.updateCartItems(anyString(), eq(actions)))
+                .thenReturn(Mono.just(new CartItemListDto(List.of(item), 10.0, false)));
+
+        webTestClient.post()
+                .uri("/cart/items")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(actions)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.cartTotal").isEqualTo(10.0)
+                .jsonPath("$.items[0].id").isEqualTo(1);
+
+        verify(itemService, times(1)).updateCartItems(anyString(), eq(actions));
+    }
+
+    @Test
+    void shouldRejectInvalidBatch() {
+        webTestClient.post()
+                .uri("/cart/items")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("[{\"itemId\": 1}]")
+                .exchange()
+                .expectStatus().isBadRequest();
+
+        verify(itemService, never()).updateCartItems(anyString(), anyList());
+    }
+
     @Test
     void shouldGetItem() {
         Item item = createTestItem(1L, "Test Item", 10.0);
-        when(itemService.getById(1L))
+        when(itemService.getById(anyString(), eq(1L)))
                 .thenReturn(Mono.just(item));
+        stubEmptyCart();
 
         webTestClient.get()
                 .uri("/items/1")
@@ -157,9 +374,21 @@ class StoreControllerTest {
                 .expectStatus().isOk();
     }
 
+    @Test
+    void shouldReturnNotFoundForMissingItem() {
+        when(itemService.getById(anyString(), eq(404L)))
+                .thenReturn(Mono.empty());
+        stubEmptyCart();
+
+        webTestClient.get()
+                .uri("/items/404")
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
     @Test
     void shouldModifyItemFromCard() {
-        when(itemService.updateCartItem(eq(1L), eq(ItemAction.plus)))
+        when(itemService.updateCartItem(anyString(), eq(1L), eq(ItemAction.plus)))
                 .thenReturn(Mono.empty());
 
         MultiValueMap<String, String> formData = new LinkedMultiValueMap<>();
@@ -177,17 +406,13 @@ class StoreControllerTest {
     @Test
     void shouldBuyItems() {
         Item item = createTestItem(1L, "Test Item", 10.0);
-        CartItemListDto cartDto = new CartItemListDto(
-                List.of(item),
-                10.00,
-                false);
         Order order = createTestOrder(1L);
 
-        when(itemService.getCartItemListDto())
-                .thenReturn(Mono.just(cartDto));
+        when(orderService.reserveCart(anyString()))
+                .thenReturn(Mono.just(List.of(item)));
         when(paymentService.processOrderPayment(any()))
                 .thenReturn(Mono.just(true));
-        when(orderService.createOrder())
+        when(orderService.createOrder(anyString(), eq(List.of(item))))
                 .thenReturn(Mono.just(order));
 
         webTestClient.post()
@@ -195,6 +420,69 @@ class StoreControllerTest {
                 .exchange()
                 .expectStatus().is3xxRedirection()
                 .expectHeader().location("/orders/1?newOrder=true");
+
+        verify(orderService, never()).releaseStock(any());
+    }
+
+    @Test
+    void shouldNotChargeWhenStockRunsOut() {
+        when(orderService.reserveCart(anyString()))
+                .thenReturn(Mono.error(new InsufficientStockException(List.of(1L))));
+
+        webTestClient.post()
+                .uri("/buy")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class)
+                .value(body -> assertThat(body).contains("Недостаточно товара на складе"));
+
+        verifyNoInteractions(paymentService);
+        verify(orderService, never()).createOrder(anyString(), anyList());
+    }
+
+    @Test
+    void shouldReleaseStockWhenPaymentDeclined() {
+        Item item = createTestItem(1L, "Test Item", 10.0);
+
+        when(orderService.reserveCart(anyString()))
+                .thenReturn(Mono.just(List.of(item)));
+        when(paymentService.processOrderPayment(any()))
+                .thenReturn(Mono.just(false));
+        when(orderService.releaseStock(List.of(item)))
+                .thenReturn(Mono.empty());
+
+        webTestClient.post()
+                .uri("/buy")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class)
+                .value(body -> assertThat(body).contains("Не достаточно средств"));
+
+        verify(orderService).releaseStock(List.of(item));
+        verify(orderService, never()).createOrder(anyString(), anyList());
+    }
+
+    @Test
+    void shouldReleaseStockWhenOrderFailsAfterPayment() {
+        Item item = createTestItem(1L, "Test Item", 10.0);
+
+        when(orderService.reserveCart(anyString()))
+                .thenReturn(Mono.just(List.of(item)));
+        when(orderService.calculateTotalPrice(List.of(item)))
+                .thenReturn(10.0);
+        when(paymentService.processOrderPayment(10.0))
+                .thenReturn(Mono.just(true));
+        when(orderService.createOrder(anyString(), eq(List.of(item))))
+                .thenReturn(Mono.error(new IllegalStateException("db is down")));
+        when(orderService.releaseStock(List.of(item)))
+                .thenReturn(Mono.empty());
+
+        webTestClient.post()
+                .uri("/buy")
+                .exchange()
+                .expectStatus().is5xxServerError();
+
+        verify(orderService).releaseStock(List.of(item));
     }
 
     @Test
@@ -208,12 +496,41 @@ class StoreControllerTest {
         OrderDto orderDto1 = new OrderDto(order1.getId(), order1.getCreatedAt(), order1.getTotalPrice(), testItems1);
         OrderDto orderDto2 = new OrderDto(order2.getId(), order2.getCreatedAt(), order2.getTotalPrice(), testItems2);
 
-        when(orderService.findAll()).thenReturn(Flux.just(orderDto1, orderDto2));
+        when(orderService.findAll(null, 10)).thenReturn(Flux.just(orderDto1, orderDto2));
+        when(orderService.findNextCursor(null, 10)).thenReturn(Mono.just("next"));
 
         webTestClient.get()
                 .uri("/orders")
                 .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class)
+                .value(body -> assertThat(body)
+                        .contains("Test item 1", "Test item 2")
+                        .contains("before=next"));
+    }
+
+    @Test
+    void shouldClampOrdersPageSize() {
+        when(orderService.findAll(null, 5)).thenReturn(Flux.empty());
+        when(orderService.findNextCursor(null, 5)).thenReturn(Mono.empty());
+        when(orderService.findAll(null, 100)).thenReturn(Flux.empty());
+        when(orderService.findNextCursor(null, 100)).thenReturn(Mono.empty());
+
+        webTestClient.get()
+                .uri("/orders?pageSize=-1")
+                .exchange()
+                .expectStatus().isOk();
+        webTestClient.get()
+                .uri("/orders?pageSize=0")
+                .exchange()
+                .expectStatus().isOk();
+        webTestClient.get()
+                .uri("/orders?pageSize=1000000")
+                .exchange()
                 .expectStatus().isOk();
+
+        verify(orderService, times(2)).findAll(null, 5);
+        verify(orderService).findAll(null, 100);
     }
 
     @Test
@@ -257,6 +574,11 @@ class StoreControllerTest {
                 .expectStatus().is5xxServerError();
     }
 
+    private void stubEmptyCart() {
+        when(itemService.getCartItemListDto(anyString()))
+                .thenReturn(Mono.just(new CartItemListDto(List.of(), 0.0, true)));
+    }
+
     private Item createTestItem(Long id, String name, Double price) {
         Item item = new Item();
         item.setId(id);
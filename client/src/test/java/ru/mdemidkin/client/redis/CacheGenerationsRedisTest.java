@@ -0,0 +1,50 @@
+package ru.mdemidkin.client.redis;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import ru.mdemidkin.client.cache.CacheGenerations;
+import ru.mdemidkin.client.cache.CacheScope;
+import ru.mdemidkin.client.config.TestContainersConfig;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+class CacheGenerationsRedisTest extends TestContainersConfig {
+
+    private static final String KEY = "intershop:cache:generation:orders";
+
+    @Autowired
+    private CacheGenerations cacheGenerations;
+
+    @Autowired
+    private ReactiveStringRedisTemplate redisTemplate;
+
+    @Test
+    @DisplayName("После потери счетчика (FLUSHALL) поколение продолжает расти, а не начинается с 1")
+    void bump_shouldAdvanceAfterCounterIsLost() {
+        cacheGenerations.bump(CacheScope.ORDERS).block();
+        long before = cacheGenerations.current(CacheScope.ORDERS);
+
+        redisTemplate.delete(KEY).block();
+        cacheGenerations.bump(CacheScope.ORDERS).block();
+
+        assertThat(cacheGenerations.current(CacheScope.ORDERS)).isGreaterThan(before);
+        assertThat(redisTemplate.opsForValue().get(KEY).map(Long::parseLong).block())
+                .isEqualTo(cacheGenerations.current(CacheScope.ORDERS));
+    }
+
+    @Test
+    @DisplayName("Счетчик, восстановленный из старого снимка, подтягивается до поколения узла")
+    void bump_shouldAdvanceAfterCounterMovesBack() {
+        cacheGenerations.bump(CacheScope.ORDERS).block();
+        long before = cacheGenerations.current(CacheScope.ORDERS);
+
+        redisTemplate.opsForValue().set(KEY, "1").block();
+        cacheGenerations.bump(CacheScope.ORDERS).block();
+
+        assertThat(cacheGenerations.current(CacheScope.ORDERS)).isEqualTo(before + 1);
+    }
+}
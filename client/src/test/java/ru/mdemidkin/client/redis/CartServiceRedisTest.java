@@ -11,6 +11,8 @@ import ru.mdemidkin.client.model.CartItem;
 import ru.mdemidkin.client.repository.CartRepository;
 import ru.mdemidkin.client.service.CartService;
 
+import java.util.UUID;
+
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.mockito.Mockito.times;
@@ -28,25 +30,44 @@ class CartServiceRedisTest extends TestContainersConfig {
 
     @Test
     void findItemById_ShouldCacheResult() {
+        String sessionId = newSession();
         Long itemId = 1L;
         CartItem item = new CartItem();
+        item.setSessionId(sessionId);
         item.setItemId(itemId);
         item.setQuantity(5);
-        when(cartRepository.findByItemId(itemId)).thenReturn(Mono.just(item));
+        when(cartRepository.findBySessionIdAndItemId(sessionId, itemId)).thenReturn(Mono.just(item));
 
-        CartItem first = cartService.findItemById(itemId).block();
-        CartItem second = cartService.findItemById(itemId).block();
+        CartItem first = cartService.findItemById(sessionId, itemId).block();
+        CartItem second = cartService.findItemById(sessionId, itemId).block();
 
-        verify(cartRepository, times(1)).findByItemId(itemId);
+        verify(cartRepository, times(1)).findBySessionIdAndItemId(sessionId, itemId);
         assertNotNull(first);
         assertNotNull(second);
         assertThat(first.getQuantity()).isEqualTo(5);
         assertThat(second.getQuantity()).isEqualTo(5);
     }
 
+    @Test
+    void findItemById_ShouldNotShareCacheBetweenSessions() {
+        String firstSession = newSession();
+        String secondSession = newSession();
+        Long itemId = 1L;
+        CartItem first = CartItem.builder().sessionId(firstSession).itemId(itemId).quantity(2).build();
+        when(cartRepository.findBySessionIdAndItemId(firstSession, itemId)).thenReturn(Mono.just(first));
+        when(cartRepository.findBySessionIdAndItemId(secondSession, itemId)).thenReturn(Mono.empty());
+
+        cartService.findItemById(firstSession, itemId).block();
+        CartItem other = cartService.findItemById(secondSession, itemId).block();
+
+        assertThat(other).isNull();
+        verify(cartRepository, times(1)).findBySessionIdAndItemId(secondSession, itemId);
+    }
+
     @Test
     void saveOrUpdate_ShouldUpdateCacheAndCallRepository() {
         CartItem item = new CartItem();
+        item.setSessionId(newSession());
         item.setItemId(1L);
         item.setQuantity(10);
         when(cartRepository.save(item)).thenReturn(Mono.just(item));
@@ -60,6 +81,7 @@ class CartServiceRedisTest extends TestContainersConfig {
     @Test
     void delete_ShouldCallRepositoryAndEvictCache() {
         CartItem item = new CartItem();
+        item.setSessionId(newSession());
         item.setItemId(1L);
         when(cartRepository.delete(item)).thenReturn(Mono.empty());
 
@@ -69,41 +91,60 @@ class CartServiceRedisTest extends TestContainersConfig {
     }
 
     @Test
-    void clearCart_ShouldCallRepositoryAndClearCache() {
-        when(cartRepository.deleteAll()).thenReturn(Mono.empty());
-
-        cartService.clearCart().block();
-
-        verify(cartRepository, times(1)).deleteAll();
+    void clearCart_ShouldEvictOnlySessionEntries() {
+        String sessionId = newSession();
+        String otherSession = newSession();
+        CartItem item = CartItem.builder().sessionId(sessionId).itemId(1L).quantity(1).build();
+        CartItem other = CartItem.builder().sessionId(otherSession).itemId(1L).quantity(3).build();
+        when(cartRepository.findBySessionIdAndItemId(sessionId, 1L)).thenReturn(Mono.just(item));
+        when(cartRepository.findBySessionIdAndItemId(otherSession, 1L)).thenReturn(Mono.just(other));
+        when(cartRepository.deleteAllBySessionId(sessionId)).thenReturn(Flux.just(1L));
+
+        cartService.findItemById(sessionId, 1L).block();
+        cartService.findItemById(otherSession, 1L).block();
+        cartService.clearCart(sessionId).block();
+        cartService.findItemById(sessionId, 1L).block();
+        cartService.findItemById(otherSession, 1L).block();
+
+        verify(cartRepository, times(1)).deleteAllBySessionId(sessionId);
+        verify(cartRepository, times(2)).findBySessionIdAndItemId(sessionId, 1L);
+        verify(cartRepository, times(1)).findBySessionIdAndItemId(otherSession, 1L);
     }
 
     @Test
     void getAll_ShouldNotUseCache() {
+        String sessionId = newSession();
         CartItem item1 = new CartItem();
         CartItem item2 = new CartItem();
-        when(cartRepository.findAll()).thenReturn(Flux.just(item1, item2));
+        when(cartRepository.findAllBySessionId(sessionId)).thenReturn(Flux.just(item1, item2));
 
-        cartService.getAll().collectList().block();
-        cartService.getAll().collectList().block();
+        cartService.getAll(sessionId).collectList().block();
+        cartService.getAll(sessionId).collectList().block();
 
-        verify(cartRepository, times(2)).findAll();
+        verify(cartRepository, times(2)).findAllBySessionId(sessionId);
     }
 
     @Test
     void cacheEviction_ShouldWorkAfterDelete() {
+        String sessionId = newSession();
         Long itemId = 1L;
         CartItem item = new CartItem();
+        item.setSessionId(sessionId);
         item.setItemId(itemId);
-        when(cartRepository.findByItemId(itemId)).thenReturn(Mono.just(item));
+        when(cartRepository.findBySessionIdAndItemId(sessionId, itemId)).thenReturn(Mono.just(item));
         when(cartRepository.delete(item)).thenReturn(Mono.empty());
 
-        cartService.findItemById(itemId).block();
-        verify(cartRepository, times(1)).findByItemId(itemId);
+        cartService.findItemById(sessionId, itemId).block();
+        verify(cartRepository, times(1)).findBySessionIdAndItemId(sessionId, itemId);
 
         cartService.delete(item).block();
 
-        cartService.findItemById(itemId).block();
+        cartService.findItemById(sessionId, itemId).block();
+
+        verify(cartRepository, times(2)).findBySessionIdAndItemId(sessionId, itemId);
+    }
 
-        verify(cartRepository, times(2)).findByItemId(itemId);
+    private static String newSession() {
+        return UUID.randomUUID().toString();
     }
 }
@@ -0,0 +1,87 @@
+package ru.mdemidkin.client.redis;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import reactor.blockhound.BlockHound;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import ru.mdemidkin.client.config.TestContainersConfig;
+import ru.mdemidkin.client.model.enums.SortType;
+import ru.mdemidkin.client.service.ItemService;
+import ru.mdemidkin.client.service.OrderService;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+
+/**
+ * Проверяет, что чтение и запись кешей не блокируют неблокирующие потоки Reactor.
+ * Запускается задачей blockhound: агенту нужен флаг -XX:+AllowRedefinitionToAddDeleteMethods
+ */
+@Tag("blockhound")
+@SpringBootTest(properties = "app-cache.local.enabled=false")
+class ReactiveCacheBlockHoundTest extends TestContainersConfig {
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private ItemService itemService;
+
+    @Autowired
+    private OrderService orderService;
+
+    @BeforeAll
+    static void installBlockHound() {
+        BlockHound.install();
+    }
+
+    @Test
+    void retrieve_ShouldNotBlockOnMissAndHit() {
+        Cache cache = cacheManager.getCache("item");
+        String key = UUID.randomUUID().toString();
+        Supplier<CompletableFuture<String>> loader = () -> CompletableFuture.completedFuture("value");
+
+        String loaded = onParallel(Mono.defer(() -> Mono.fromFuture(cache.retrieve(key, loader))));
+        String cached = onParallel(Mono.defer(() -> Mono.fromFuture(cache.retrieve(key, loader))));
+
+        assertThat(loaded).isEqualTo("value");
+        assertThat(cached).isEqualTo("value");
+    }
+
+    @Test
+    void putAndEvict_ShouldNotBlock() {
+        Cache cache = cacheManager.getCache("item");
+        String key = UUID.randomUUID().toString();
+
+        assertThatCode(() -> onParallel(Mono.fromRunnable(() -> {
+            cache.put(key, "value");
+            cache.evict(key);
+        }))).doesNotThrowAnyException();
+    }
+
+    @Test
+    void cachedServices_ShouldNotBlockOnCacheHit() {
+        itemService.searchItems("blockhound-session", "", SortType.NO, 1, 10).block();
+        itemService.getCartItemListDto("blockhound-session").block();
+        orderService.findAll(null, 10).collectList().block();
+
+        assertThatCode(() -> {
+            onParallel(Mono.defer(() -> itemService.searchItems("blockhound-session", "", SortType.NO, 1, 10)));
+            onParallel(Mono.defer(() -> itemService.getCartItemListDto("blockhound-session")));
+            onParallel(Mono.defer(() -> orderService.findAll(null, 10).collectList()));
+        }).doesNotThrowAnyException();
+    }
+
+    private static <T> T onParallel(Mono<T> mono) {
+        return mono.subscribeOn(Schedulers.parallel()).block();
+    }
+}
@@ -0,0 +1,127 @@
+package ru.mdemidkin.client.redis;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import reactor.core.publisher.Flux;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import ru.mdemidkin.client.config.TestContainersConfig;
+import ru.mdemidkin.client.dto.CartItemActionDto;
+import ru.mdemidkin.client.model.CartItem;
+import ru.mdemidkin.client.model.Item;
+import ru.mdemidkin.client.model.enums.ItemAction;
+import ru.mdemidkin.client.repository.CartRepository;
+import ru.mdemidkin.client.repository.CartStore;
+import ru.mdemidkin.client.repository.RedisCartStore;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = "app-cart.store=redis")
+class RedisCartStoreTest extends TestContainersConfig {
+
+    private static final String SESSION_ID = "session-1";
+    private static final String OTHER_SESSION_ID = "session-2";
+
+    @Autowired
+    private CartStore cartStore;
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private ReactiveStringRedisTemplate redisTemplate;
+
+    @BeforeEach
+    @AfterEach
+    void cleanUp() {
+        cartStore.clear(SESSION_ID).then(cartStore.clear(OTHER_SESSION_ID)).block();
+    }
+
+    @Test
+    @DisplayName("При app-cart.store=redis корзина хранится в Redis и не пишется в БД")
+    void increment_shouldNotTouchDatabase() {
+        assertThat(cartStore).isInstanceOf(RedisCartStore.class);
+
+        cartStore.increment(SESSION_ID, 2L).block();
+
+        assertThat(cartStore.findByItemId(SESSION_ID, 2L).map(CartItem::getQuantity).block()).isEqualTo(1);
+        assertThat(cartRepository.findBySessionIdAndItemId(SESSION_ID, 2L).blockOptional()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Одновременные \"+\" не теряют обновлений")
+    void increment_shouldNotLoseConcurrentUpdates() {
+        Flux.range(0, 20)
+                .flatMap(i -> cartStore.increment(SESSION_ID, 2L), 20)
+                .blockLast();
+
+        assertThat(cartStore.findByItemId(SESSION_ID, 2L).map(CartItem::getQuantity).block()).isEqualTo(20);
+    }
+
+    @Test
+    @DisplayName("\"-\" уменьшает количество, а последняя единица удаляет товар из корзины")
+    void decrement_shouldDeleteLastUnit() {
+        cartStore.increment(SESSION_ID, 2L).block();
+        cartStore.increment(SESSION_ID, 2L).block();
+
+        CartItem decremented = cartStore.decrement(SESSION_ID, 2L).block();
+        CartItem deleted = cartStore.decrement(SESSION_ID, 2L).block();
+
+        assertThat(decremented).isNotNull();
+        assertThat(decremented.getQuantity()).isEqualTo(1);
+        assertThat(deleted).isNull();
+        assertThat(cartStore.findByItemId(SESSION_ID, 2L).blockOptional()).isEmpty();
+        assertThat(cartStore.decrement(SESSION_ID, 2L).blockOptional()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Товары корзины читаются одним HGETALL и одним запросом товаров")
+    void findItemsInCart_shouldReturnItemsWithQuantity() {
+        cartStore.increment(SESSION_ID, 3L).block();
+        cartStore.increment(SESSION_ID, 1L).block();
+        cartStore.increment(SESSION_ID, 1L).block();
+
+        List<Item> items = cartStore.findItemsInCart(SESSION_ID).collectList().block();
+        Map<Long, Integer> quantities = cartStore.getQuantities(SESSION_ID, List.of(1L, 2L, 3L)).block();
+
+        assertThat(items).extracting(Item::getId).containsExactly(1L, 3L);
+        assertThat(items).extracting(Item::getCount).containsExactly(2, 1);
+        assertThat(quantities).isEqualTo(Map.of(1L, 2, 3L, 1));
+    }
+
+    @Test
+    @DisplayName("У каждой сессии своя корзина со временем жизни")
+    void increment_shouldKeepSessionsApart() {
+        cartStore.increment(SESSION_ID, 2L).block();
+        cartStore.increment(OTHER_SESSION_ID, 2L).block();
+        cartStore.increment(OTHER_SESSION_ID, 2L).block();
+
+        cartStore.clear(OTHER_SESSION_ID).block();
+
+        assertThat(cartStore.findByItemId(SESSION_ID, 2L).map(CartItem::getQuantity).block()).isEqualTo(1);
+        assertThat(cartStore.findByItemId(OTHER_SESSION_ID, 2L).blockOptional()).isEmpty();
+        assertThat(redisTemplate.getExpire("intershop:cart:" + SESSION_ID).block()).isPositive();
+    }
+
+    @Test
+    @DisplayName("Пакет действий применяется одним скриптом в порядке следования")
+    void apply_shouldApplyActionsInOrder() {
+        cartStore.increment(SESSION_ID, 3L).block();
+        cartStore.increment(SESSION_ID, 4L).block();
+
+        cartStore.apply(SESSION_ID, List.of(
+                new CartItemActionDto(2L, ItemAction.plus),
+                new CartItemActionDto(2L, ItemAction.plus),
+                new CartItemActionDto(3L, ItemAction.minus),
+                new CartItemActionDto(4L, ItemAction.delete),
+                new CartItemActionDto(2L, ItemAction.minus))).block();
+
+        assertThat(cartStore.getQuantities(SESSION_ID, List.of(2L, 3L, 4L)).block()).isEqualTo(Map.of(2L, 1));
+    }
+}
@@ -0,0 +1,126 @@
+package ru.mdemidkin.client.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import reactor.core.publisher.Flux;
+import ru.mdemidkin.client.config.TestContainersConfig;
+import ru.mdemidkin.client.dto.CartItemActionDto;
+import ru.mdemidkin.client.model.CartItem;
+import ru.mdemidkin.client.model.enums.ItemAction;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+class CartRepositoryIntegrationTest extends TestContainersConfig {
+
+    private static final long ITEM_ID = 2L;
+    private static final String SESSION_ID = "session-1";
+    private static final String OTHER_SESSION_ID = "session-2";
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private CartStore cartStore;
+
+    @BeforeEach
+    @AfterEach
+    void cleanUp() {
+        cartRepository.deleteAllBySessionId(SESSION_ID)
+                .thenMany(cartRepository.deleteAllBySessionId(OTHER_SESSION_ID))
+                .blockLast();
+    }
+
+    @Test
+    @DisplayName("Одновременные \"+\" не теряют обновлений")
+    void increment_shouldNotLoseConcurrentUpdates() {
+        Flux.range(0, 20)
+                .flatMap(i -> cartRepository.increment(SESSION_ID, ITEM_ID), 20)
+                .blockLast();
+
+        CartItem cartItem = cartRepository.findBySessionIdAndItemId(SESSION_ID, ITEM_ID).block();
+        assertThat(cartItem).isNotNull();
+        assertThat(cartItem.getQuantity()).isEqualTo(20);
+    }
+
+    @Test
+    @DisplayName("Параллельные пакеты для товара, которого еще нет в корзине, не теряют обновлений")
+    void apply_shouldNotLoseConcurrentBatchesForNewItem() {
+        List<CartItemActionDto> batch = List.of(
+                new CartItemActionDto(ITEM_ID, ItemAction.plus),
+                new CartItemActionDto(ITEM_ID, ItemAction.plus));
+
+        Flux.range(0, 10)
+                .flatMap(i -> cartStore.apply(SESSION_ID, batch), 10)
+                .blockLast();
+
+        CartItem cartItem = cartRepository.findBySessionIdAndItemId(SESSION_ID, ITEM_ID).block();
+        assertThat(cartItem).isNotNull();
+        assertThat(cartItem.getQuantity()).isEqualTo(20);
+    }
+
+    @Test
+    @DisplayName("Пакет применяется по порядку действий, опустевшие строки удаляются")
+    void apply_shouldFollowActionOrderAndDeleteEmptyRows() {
+        cartRepository.increment(SESSION_ID, 3L).block();
+
+        cartStore.apply(SESSION_ID, List.of(
+                new CartItemActionDto(ITEM_ID, ItemAction.minus),
+                new CartItemActionDto(ITEM_ID, ItemAction.plus),
+                new CartItemActionDto(3L, ItemAction.minus))).block();
+
+        assertThat(cartRepository.findAllBySessionId(SESSION_ID).collectMap(CartItem::getItemId, CartItem::getQuantity)
+                .block()).isEqualTo(Map.of(ITEM_ID, 1));
+    }
+
+    @Test
+    @DisplayName("\"-\" уменьшает количество, а последняя единица удаляет товар из корзины")
+    void decrement_shouldDeleteLastUnit() {
+        cartRepository.increment(SESSION_ID, ITEM_ID).block();
+        cartRepository.increment(SESSION_ID, ITEM_ID).block();
+
+        CartItem decremented = cartRepository.decrement(SESSION_ID, ITEM_ID).block();
+        CartItem deleted = cartRepository.decrement(SESSION_ID, ITEM_ID).block();
+
+        assertThat(decremented).isNotNull();
+        assertThat(decremented.getQuantity()).isEqualTo(1);
+        assertThat(deleted).isNull();
+        assertThat(cartRepository.findBySessionIdAndItemId(SESSION_ID, ITEM_ID).blockOptional()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Одновременные \"-\" удаляют товар ровно после последней единицы")
+    void decrement_shouldStayConsistentUnderConcurrency() {
+        Flux.range(0, 5)
+                .concatMap(i -> cartRepository.increment(SESSION_ID, ITEM_ID))
+                .blockLast();
+
+        Flux.range(0, 5)
+                .flatMap(i -> cartRepository.decrement(SESSION_ID, ITEM_ID), 5)
+                .blockLast();
+
+        assertThat(cartRepository.findBySessionIdAndItemId(SESSION_ID, ITEM_ID).blockOptional()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Корзины разных сессий не пересекаются")
+    void increment_shouldKeepSessionsApart() {
+        cartRepository.increment(SESSION_ID, ITEM_ID).block();
+        cartRepository.increment(OTHER_SESSION_ID, ITEM_ID).block();
+        cartRepository.increment(OTHER_SESSION_ID, ITEM_ID).block();
+
+        cartRepository.deleteAllBySessionId(OTHER_SESSION_ID).blockLast();
+
+        CartItem cartItem = cartRepository.findBySessionIdAndItemId(SESSION_ID, ITEM_ID).block();
+        assertThat(cartItem).isNotNull();
+        assertThat(cartItem.getQuantity()).isEqualTo(1);
+        assertThat(cartRepository.findBySessionIdAndItemId(OTHER_SESSION_ID, ITEM_ID).blockOptional()).isEmpty();
+    }
+}
@@ -5,12 +5,18 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import ru.mdemidkin.client.config.TestContainersConfig;
+import ru.mdemidkin.client.dto.ItemsPage;
+import ru.mdemidkin.client.dto.PageCursor;
 import ru.mdemidkin.client.model.Item;
+import ru.mdemidkin.client.model.enums.SearchMode;
 import ru.mdemidkin.client.model.enums.SortType;
 
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 
 @SpringBootTest
 class ItemRepositoryIntegrationTest extends TestContainersConfig {
@@ -18,6 +24,9 @@ class ItemRepositoryIntegrationTest extends TestContainersConfig {
     @Autowired
     private ItemRepository itemRepository;
 
+    @Autowired
+    private CartRepository cartRepository;
+
     @Test
     @DisplayName("Подсчет всех товаров должен вернуть четыре записи")
     void countAllItems_shouldReturnFour() {
@@ -56,5 +65,102 @@ class ItemRepositoryIntegrationTest extends TestContainersConfig {
         assertThat(orderItems)
                 .withFailMessage("В заказе №1 должно быть 2 товара")
                 .hasSize(2);
+        assertThat(orderItems)
+                .extracting(Item::getCount, Item::getPrice)
+                .containsExactly(tuple(1, 1599.99), tuple(2, 299.99));
+    }
+
+    @Test
+    @DisplayName("Получение товаров нескольких заказов одним запросом")
+    void findItemsByOrderIds_shouldGroupItemsByOrder() {
+        Map<Long, List<Item>> itemsByOrder = itemRepository.findItemsByOrderIds(List.of(1L, 2L)).block();
+
+        assertThat(itemsByOrder).containsOnlyKeys(1L, 2L);
+        assertThat(itemsByOrder.get(1L)).hasSize(2);
+        assertThat(itemsByOrder.get(2L))
+                .extracting(Item::getCount)
+                .containsExactly(2);
+    }
+
+    @Test
+    @DisplayName("Полнотекстовый поиск находит товар по словоформе из описания")
+    void findItemsBySearch_fullText_shouldMatchWordForms() {
+        List<Item> items = itemRepository
+                .getItemsBySearch("наушник", SortType.NO, SearchMode.FULL_TEXT, 1, 10)
+                .collectList()
+                .block();
+        Long count = itemRepository.getCountBySearch("наушник", SearchMode.FULL_TEXT).block();
+
+        assertThat(items)
+                .extracting(Item::getTitle)
+                .withFailMessage("Ожидался товар Sony")
+                .singleElement()
+                .satisfies(title -> assertThat(title).contains("Sony"));
+        assertThat(count).isEqualTo(1L);
+    }
+
+    @Test
+    @DisplayName("Полнотекстовый поиск находит товар по подстроке без учета регистра")
+    void findItemsBySearch_fullText_shouldMatchSubstring() {
+        List<Item> items = itemRepository
+                .getItemsBySearch("galax", SortType.NO, SearchMode.FULL_TEXT, 1, 10)
+                .collectList()
+                .block();
+
+        assertThat(items)
+                .extracting(Item::getTitle)
+                .withFailMessage("Ожидался товар Samsung")
+                .singleElement()
+                .satisfies(title -> assertThat(title).contains("Galaxy"));
+    }
+
+    @Test
+    @DisplayName("Keyset-пагинация по цене продолжает выдачу после курсора")
+    void findItemsBySearchAfter_priceSort_shouldContinueAfterCursor() {
+        List<Item> firstPage = itemRepository
+                .getItemsBySearchAfter("", SortType.PRICE, SearchMode.FULL_TEXT, null, true, 2)
+                .collectList()
+                .block();
+        Item last = firstPage.get(firstPage.size() - 1);
+        List<Item> secondPage = itemRepository
+                .getItemsBySearchAfter("", SortType.PRICE, SearchMode.FULL_TEXT,
+                        PageCursor.of(last.getPrice(), last.getId()), true, 2)
+                .collectList()
+                .block();
+
+        assertThat(firstPage).extracting(Item::getPrice).containsExactly(299.99, 499.99);
+        assertThat(secondPage).extracting(Item::getPrice).containsExactly(999.99, 1599.99);
+    }
+
+    @Test
+    @DisplayName("Страница и общее число товаров возвращаются одним запросом")
+    void getItemsPageBySearch_shouldReturnPageWithTotalCount() {
+        ItemsPage page = itemRepository
+                .getItemsPageBySearch("", SortType.PRICE, SearchMode.FULL_TEXT, 2, 3)
+                .block();
+
+        assertThat(page.items())
+                .extracting(Item::getPrice)
+                .containsExactly(1599.99);
+        assertThat(page.totalCount()).isEqualTo(4L);
+    }
+
+    @Test
+    @DisplayName("Товары корзины сессии загружаются вместе с количеством")
+    void findItemsInCart_shouldReturnItemsWithQuantity() {
+        String sessionId = UUID.randomUUID().toString();
+        cartRepository.increment(sessionId, 4L)
+                .then(cartRepository.increment(sessionId, 1L))
+                .then(cartRepository.increment(sessionId, 1L))
+                .then(cartRepository.increment(UUID.randomUUID().toString(), 2L))
+                .block();
+
+        List<Item> items = itemRepository.findItemsInCart(sessionId)
+                .collectList()
+                .block();
+
+        assertThat(items)
+                .extracting(Item::getId, Item::getCount)
+                .containsExactly(tuple(4L, 1), tuple(1L, 2));
     }
 }
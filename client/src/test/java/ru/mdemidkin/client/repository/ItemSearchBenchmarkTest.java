@@ -0,0 +1,105 @@
+package ru.mdemidkin.client.repository;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Mono;
+import ru.mdemidkin.client.config.TestContainersConfig;
+import ru.mdemidkin.client.model.enums.SearchMode;
+import ru.mdemidkin.client.model.enums.SortType;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Сравнение поиска через LIKE и полнотекстового поиска на большом каталоге.
+ * Запуск: gradle :client:benchmark
+ */
+@Tag("benchmark")
+@SpringBootTest
+class ItemSearchBenchmarkTest extends TestContainersConfig {
+
+    private static final int CATALOG_SIZE = 300_000;
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURE_ROUNDS = 20;
+    private static final List<String> TERMS = List.of("наушники", "samsung", "шумоподавлением", "монитор 4k");
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @Autowired
+    private DatabaseClient databaseClient;
+
+    @Test
+    void compareLikeAndFullTextSearch() {
+        seedCatalog();
+        try {
+            System.out.printf("%-20s %12s %12s%n", "term", "like, ms", "full_text, ms");
+            for (String term : TERMS) {
+                double like = measure(() -> searchPage(term, SearchMode.LIKE));
+                double fullText = measure(() -> searchPage(term, SearchMode.FULL_TEXT));
+                System.out.printf("%-20s %12.2f %12.2f%n", term, like, fullText);
+            }
+            assertThat(itemRepository.getCountBySearch("наушники", SearchMode.FULL_TEXT).block()).isPositive();
+        } finally {
+            databaseClient.sql("DELETE FROM items WHERE id > 4").then().block();
+        }
+    }
+
+    @Test
+    void compareSeparateCountAndSingleQueryPage() {
+        seedCatalog();
+        try {
+            System.out.printf("%-20s %16s %16s%n", "term", "count + page, ms", "single query, ms");
+            for (String term : TERMS) {
+                double separate = measure(() -> searchPage(term, SearchMode.FULL_TEXT));
+                double single = measure(() -> itemRepository
+                        .getItemsPageBySearch(term, SortType.NO, SearchMode.FULL_TEXT, 1, 10));
+                System.out.printf("%-20s %16.2f %16.2f%n", term, separate, single);
+            }
+        } finally {
+            databaseClient.sql("DELETE FROM items WHERE id > 4").then().block();
+        }
+    }
+
+    private Mono<?> searchPage(String term, SearchMode mode) {
+        return itemRepository.getItemsBySearch(term, SortType.NO, mode, 1, 10)
+                .collectList()
+                .zipWith(itemRepository.getCountBySearch(term, mode));
+    }
+
+    private double measure(Supplier<Mono<?>> search) {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            search.get().block();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURE_ROUNDS; i++) {
+            search.get().block();
+        }
+        return (System.nanoTime() - start) / 1_000_000.0 / MEASURE_ROUNDS;
+    }
+
+    private void seedCatalog() {
+        databaseClient.sql("""
+                        INSERT INTO items (title, description, img_path, price, stock_count)
+                        SELECT (ARRAY ['Ноутбук', 'Смартфон', 'Наушники', 'Монитор', 'Планшет'])[1 + g % 5]
+                                   || ' ' || (ARRAY ['Lenovo', 'Samsung', 'Sony', 'LG', 'Apple', 'Xiaomi'])[1 + g % 6]
+                                   || ' ' || md5(g::text),
+                               (ARRAY ['Беспроводные наушники с шумоподавлением', '27" 4K монитор с USB-C',
+                                   'Флагманский смартфон', 'Бизнес-ноутбук с 14" дисплеем', 'Планшет для работы'])[1 + g % 5]
+                                   || ' ' || md5((g * 7)::text),
+                               'item.jpg',
+                               (g % 100000) / 10.0,
+                               g % 50
+                        FROM generate_series(1, :size) AS g
+                        """)
+                .bind("size", CATALOG_SIZE)
+                .then()
+                .then(databaseClient.sql("ANALYZE items").then())
+                .block();
+    }
+}
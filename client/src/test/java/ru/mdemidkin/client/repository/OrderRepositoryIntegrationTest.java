@@ -0,0 +1,85 @@
+package ru.mdemidkin.client.repository;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import ru.mdemidkin.client.config.TestContainersConfig;
+import ru.mdemidkin.client.dto.OrderDto;
+import ru.mdemidkin.client.dto.PageCursor;
+import ru.mdemidkin.client.model.Item;
+import ru.mdemidkin.client.model.Order;
+import ru.mdemidkin.client.model.OrderItem;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+@SpringBootTest
+class OrderRepositoryIntegrationTest extends TestContainersConfig {
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private OrderItemRepository orderItemRepository;
+
+    @Autowired
+    private TransactionalOperator transactionalOperator;
+
+    @Test
+    @DisplayName("История заказов возвращается от новых к старым вместе с товарами")
+    void findOrdersWithItems_shouldGroupItemsByOrder() {
+        List<OrderDto> orders = orderRepository.findOrdersWithItems(null, 10)
+                .collectList()
+                .block();
+
+        assertThat(orders)
+                .extracting(OrderDto::id)
+                .containsExactly(1L, 2L);
+        assertThat(orders.get(0).items())
+                .extracting(Item::getId)
+                .containsExactly(1L, 3L);
+        assertThat(orders.get(1).totalPrice()).isEqualTo(1999.98);
+    }
+
+    @Test
+    @DisplayName("Курсор следующей страницы указывает на последний заказ текущей")
+    void findNextOrdersCursor_shouldContinueAfterLastOrderOfPage() {
+        PageCursor next = orderRepository.findNextOrdersCursor(null, 1).block();
+        List<OrderDto> secondPage = orderRepository.findOrdersWithItems(next, 1)
+                .collectList()
+                .block();
+
+        assertThat(next.id()).isEqualTo(1L);
+        assertThat(secondPage)
+                .extracting(OrderDto::id)
+                .containsExactly(2L);
+        assertThat(orderRepository.findNextOrdersCursor(next, 1).blockOptional()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Позиции заказа записываются одним INSERT и откатываются вместе с заказом")
+    void insertAll_shouldWriteAllItemsInOneStatement() {
+        List<OrderItem> written = transactionalOperator.<List<OrderItem>>execute(status -> {
+                    status.setRollbackOnly();
+                    return orderRepository.save(Order.builder().createdAt(LocalDateTime.now()).totalPrice(30.0).build())
+                            .flatMap(order -> orderItemRepository.insertAll(order.getId(),
+                                            new Long[]{1L, 2L}, new Integer[]{1, 2}, new Double[]{10.0, 10.0})
+                                    .doOnNext(rows -> assertThat(rows).isEqualTo(2))
+                                    .thenMany(orderItemRepository.findAll()
+                                            .filter(item -> item.getOrderId().equals(order.getId())))
+                                    .collectList());
+                })
+                .blockLast();
+
+        assertThat(written)
+                .extracting(OrderItem::getItemId, OrderItem::getQuantity, OrderItem::getPricePerItem)
+                .containsExactlyInAnyOrder(tuple(1L, 1, 10.0), tuple(2L, 2, 10.0));
+        assertThat(orderRepository.findOrdersWithItems(null, 10).map(OrderDto::id).collectList().block())
+                .containsExactly(1L, 2L);
+    }
+}
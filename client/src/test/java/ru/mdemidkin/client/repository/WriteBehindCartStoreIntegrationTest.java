@@ -0,0 +1,200 @@
+package ru.mdemidkin.client.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import ru.mdemidkin.client.config.AppCartProperties;
+import ru.mdemidkin.client.config.TestContainersConfig;
+import ru.mdemidkin.client.model.CartItem;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Отложенная запись корзин и ее поведение при падении узла. Автоматический сброс отключен длинным периодом,
+ * сброс в тестах вызывается явно. "Другой узел" - второй экземпляр хранилища над теми же Redis и БД
+ */
+@SpringBootTest(properties = {
+        "app-cart.store=write-behind",
+        "app-cart.write-behind.flush-interval=1h",
+        "app-cart.write-behind.batch-size=1000"
+})
+class WriteBehindCartStoreIntegrationTest extends TestContainersConfig {
+
+    private static final String SESSION_ID = "write-behind-1";
+    private static final String OTHER_SESSION_ID = "write-behind-2";
+
+    @Autowired
+    private WriteBehindCartStore cartStore;
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @Autowired
+    private ReactiveStringRedisTemplate redisTemplate;
+
+    @Autowired
+    private TransactionalOperator transactionalOperator;
+
+    @Autowired
+    private AppCartProperties properties;
+
+    @BeforeEach
+    @AfterEach
+    void cleanUp() {
+        redisTemplate.delete(RedisCartStore.key(SESSION_ID), RedisCartStore.key(OTHER_SESSION_ID),
+                WriteBehindCartStore.DIRTY_KEY, WriteBehindCartStore.LOCK_KEY).block();
+        cartRepository.deleteAllBySessionId(SESSION_ID)
+                .thenMany(cartRepository.deleteAllBySessionId(OTHER_SESSION_ID))
+                .blockLast();
+    }
+
+    @Test
+    @DisplayName("Десять \"+\" до сброса записываются одной строкой с итоговым количеством")
+    void flush_shouldCoalesceClicks() {
+        Flux.range(0, 10)
+                .concatMap(i -> cartStore.increment(SESSION_ID, 2L))
+                .blockLast();
+
+        assertThat(databaseCart(SESSION_ID)).isEmpty();
+        assertThat(cartStore.findByItemId(SESSION_ID, 2L).map(CartItem::getQuantity).block()).isEqualTo(10);
+
+        cartStore.flushDirty().block();
+
+        assertThat(databaseCart(SESSION_ID)).isEqualTo(Map.of(2L, 10));
+        assertThat(dirtySessions()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Сброс пишет корзины нескольких сессий и удаляет из БД убранные товары")
+    void flush_shouldWriteSeveralCartsAndRemovedItems() {
+        cartStore.increment(SESSION_ID, 1L).block();
+        cartStore.increment(SESSION_ID, 2L).block();
+        cartStore.increment(OTHER_SESSION_ID, 3L).block();
+        cartStore.flushDirty().block();
+
+        cartStore.decrement(SESSION_ID, 1L).block();
+        cartStore.increment(OTHER_SESSION_ID, 3L).block();
+        cartStore.flushDirty().block();
+
+        assertThat(databaseCart(SESSION_ID)).isEqualTo(Map.of(2L, 1));
+        assertThat(databaseCart(OTHER_SESSION_ID)).isEqualTo(Map.of(3L, 2));
+    }
+
+    @Test
+    @DisplayName("Оформление заказа сбрасывает корзину принудительно, очистка сразу попадает в БД")
+    void flushAndClear_shouldBeWrittenImmediately() {
+        cartStore.increment(SESSION_ID, 2L).block();
+
+        cartStore.flush(SESSION_ID).block();
+        assertThat(databaseCart(SESSION_ID)).isEqualTo(Map.of(2L, 1));
+
+        cartStore.clear(SESSION_ID).block();
+        assertThat(databaseCart(SESSION_ID)).isEmpty();
+        assertThat(dirtySessions()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Принудительный сброс ждет блокировку фонового сброса и не пишет в БД параллельно с ним")
+    void flush_shouldWaitForFlushLock() throws Exception {
+        cartStore.increment(SESSION_ID, 2L).block();
+        redisTemplate.opsForValue().set(WriteBehindCartStore.LOCK_KEY, "another-node").block();
+
+        CompletableFuture<Void> flush = cartStore.flush(SESSION_ID).toFuture();
+        Thread.sleep(300);
+
+        assertThat(flush).isNotDone();
+        assertThat(databaseCart(SESSION_ID)).isEmpty();
+
+        redisTemplate.delete(WriteBehindCartStore.LOCK_KEY).block();
+        flush.get(5, TimeUnit.SECONDS);
+
+        assertThat(databaseCart(SESSION_ID)).isEqualTo(Map.of(2L, 1));
+        assertThat(dirtySessions()).isEmpty();
+        assertThat(redisTemplate.hasKey(WriteBehindCartStore.LOCK_KEY).block()).isFalse();
+    }
+
+    @Test
+    @DisplayName("Узел упал до сброса: изменения остаются в Redis, их записывает другой узел")
+    void crashBeforeFlush_shouldKeepChanges() {
+        cartStore.increment(SESSION_ID, 2L).block();
+        cartStore.increment(SESSION_ID, 2L).block();
+
+        anotherNode().flushDirty().block();
+
+        assertThat(databaseCart(SESSION_ID)).isEqualTo(Map.of(2L, 2));
+    }
+
+    @Test
+    @DisplayName("Узел упал после записи в БД, но до снятия отметки: другой узел повторяет запись без дублей")
+    void crashDuringFlush_shouldRewriteIdempotently() {
+        cartStore.increment(SESSION_ID, 2L).block();
+        List<Map.Entry<String, String>> dirty = dirtySessions();
+
+        cartStore.writeBatch(dirty).block();
+        anotherNode().flushDirty().block();
+
+        assertThat(databaseCart(SESSION_ID)).isEqualTo(Map.of(2L, 1));
+        assertThat(dirtySessions()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Изменение во время сброса не теряет отметку и попадает в следующий сброс")
+    void changeDuringFlush_shouldStayDirty() {
+        cartStore.increment(SESSION_ID, 2L).block();
+        List<Map.Entry<String, String>> dirty = dirtySessions();
+
+        cartStore.writeBatch(dirty).block();
+        cartStore.increment(SESSION_ID, 2L).block();
+        cartStore.flushBatch(dirty).block();
+
+        assertThat(dirtySessions()).extracting(Map.Entry::getKey).containsExactly(SESSION_ID);
+
+        cartStore.flushDirty().block();
+        assertThat(databaseCart(SESSION_ID)).isEqualTo(Map.of(2L, 2));
+    }
+
+    @Test
+    @DisplayName("Потеря данных Redis до сброса: в БД остается состояние последнего сброса")
+    void redisLossBeforeFlush_shouldLoseOnlyUnflushedChanges() {
+        cartStore.increment(SESSION_ID, 2L).block();
+        cartStore.flushDirty().block();
+        cartStore.increment(SESSION_ID, 2L).block();
+        cartStore.increment(SESSION_ID, 3L).block();
+
+        redisTemplate.delete(RedisCartStore.key(SESSION_ID), WriteBehindCartStore.DIRTY_KEY).block();
+        anotherNode().flushDirty().block();
+
+        assertThat(databaseCart(SESSION_ID)).isEqualTo(Map.of(2L, 1));
+    }
+
+    private WriteBehindCartStore anotherNode() {
+        return new WriteBehindCartStore(redisTemplate, itemRepository, cartRepository,
+                transactionalOperator, properties);
+    }
+
+    private Map<Long, Integer> databaseCart(String sessionId) {
+        return cartRepository.findAllBySessionId(sessionId)
+                .collectMap(CartItem::getItemId, CartItem::getQuantity)
+                .block();
+    }
+
+    private List<Map.Entry<String, String>> dirtySessions() {
+        return redisTemplate.<String, String>opsForHash().scan(WriteBehindCartStore.DIRTY_KEY)
+                .collectList()
+                .block();
+    }
+}
@@ -1,35 +1,78 @@
 package ru.mdemidkin.client.service;
 
 import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.transaction.reactive.TransactionalOperator;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import ru.mdemidkin.client.cache.CacheGenerations;
+import ru.mdemidkin.client.cache.CacheScope;
+import ru.mdemidkin.client.dto.CartItemActionDto;
 import ru.mdemidkin.client.model.CartItem;
+import ru.mdemidkin.client.model.enums.ItemAction;
 import ru.mdemidkin.client.repository.CartRepository;
+import ru.mdemidkin.client.repository.DatabaseCartStore;
+import ru.mdemidkin.client.repository.ItemRepository;
+
+import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.AdditionalMatchers.aryEq;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
 class CartServiceUnitTest {
 
+    private static final String SESSION_ID = "session-1";
+
     @Mock
     private CartRepository cartRepository;
 
-    @InjectMocks
+    @Mock
+    private ItemRepository itemRepository;
+
+    @Mock
+    private CacheManager cacheManager;
+
+    @Mock
+    private Cache cache;
+
+    @Mock
+    private CacheGenerations cacheGenerations;
+
+    @Mock
+    private TransactionalOperator transactionalOperator;
+
     private CartService cartService;
 
+    @BeforeEach
+    void setUp() {
+        when(cacheManager.getCache("cartItem")).thenReturn(cache);
+        cartService = new CartService(
+                new DatabaseCartStore(cartRepository, itemRepository, cacheManager, cacheGenerations,
+                        transactionalOperator));
+    }
+
     @Test
     void findItemById_shouldReturnCartItem() {
-        CartItem item = CartItem.builder().id(1L).itemId(2L).quantity(3).build();
-        when(cartRepository.findByItemId(2L)).thenReturn(Mono.just(item));
+        CartItem item = CartItem.builder().id(1L).sessionId(SESSION_ID).itemId(2L).quantity(3).build();
+        when(cartRepository.findBySessionIdAndItemId(SESSION_ID, 2L)).thenReturn(Mono.just(item));
 
-        cartService.findItemById(2L)
+        cartService.findItemById(SESSION_ID, 2L)
                 .doOnNext(found -> {
                     assertEquals(2L, found.getItemId());
                     assertEquals(3, found.getQuantity());
@@ -37,9 +80,29 @@ class CartServiceUnitTest {
                 .block();
     }
 
+    @Test
+    void getQuantities_shouldReturnQuantitiesByItemId() {
+        CartItem a = CartItem.builder().id(1L).sessionId(SESSION_ID).itemId(2L).quantity(3).build();
+        CartItem b = CartItem.builder().id(2L).sessionId(SESSION_ID).itemId(4L).quantity(1).build();
+        when(cartRepository.findAllBySessionIdAndItemIdIn(SESSION_ID, List.of(2L, 3L, 4L)))
+                .thenReturn(Flux.just(a, b));
+
+        Map<Long, Integer> quantities = cartService.getQuantities(SESSION_ID, List.of(2L, 3L, 4L)).block();
+
+        assertEquals(Map.of(2L, 3, 4L, 1), quantities);
+    }
+
+    @Test
+    void getQuantities_shouldSkipQueryForEmptyPage() {
+        Map<Long, Integer> quantities = cartService.getQuantities(SESSION_ID, List.of()).block();
+
+        assertEquals(Map.of(), quantities);
+        verifyNoInteractions(cartRepository);
+    }
+
     @Test
     void saveOrUpdate_shouldSaveItem() {
-        CartItem item = CartItem.builder().itemId(2L).quantity(1).build();
+        CartItem item = CartItem.builder().sessionId(SESSION_ID).itemId(2L).quantity(1).build();
         when(cartRepository.save(item)).thenReturn(Mono.just(item));
 
         CartItem saved = cartService.saveOrUpdate(item).block();
@@ -49,7 +112,7 @@ class CartServiceUnitTest {
 
     @Test
     void delete_shouldCompleteSuccessfully() {
-        CartItem item = CartItem.builder().id(1L).itemId(2L).build();
+        CartItem item = CartItem.builder().id(1L).sessionId(SESSION_ID).itemId(2L).build();
         when(cartRepository.delete(item)).thenReturn(Mono.empty());
 
         Assertions.assertDoesNotThrow(() -> cartService.delete(item).block());
@@ -57,18 +120,53 @@ class CartServiceUnitTest {
 
     @Test
     void getAll_shouldReturnAllItems() {
-        CartItem a = CartItem.builder().id(1L).itemId(2L).build();
-        CartItem b = CartItem.builder().id(2L).itemId(3L).build();
-        when(cartRepository.findAll()).thenReturn(Flux.just(a, b));
+        CartItem a = CartItem.builder().id(1L).sessionId(SESSION_ID).itemId(2L).build();
+        CartItem b = CartItem.builder().id(2L).sessionId(SESSION_ID).itemId(3L).build();
+        when(cartRepository.findAllBySessionId(SESSION_ID)).thenReturn(Flux.just(a, b));
 
-        var list = cartService.getAll().collectList().block();
+        var list = cartService.getAll(SESSION_ID).collectList().block();
         assertNotNull(list);
         assertEquals(2, list.size());
     }
 
     @Test
-    void clearCart_shouldCompleteSuccessfully() {
-        when(cartRepository.deleteAll()).thenReturn(Mono.empty());
-        Assertions.assertDoesNotThrow(() -> cartService.clearCart().block());
+    void clearCart_shouldEvictOnlySessionEntries() {
+        when(cartRepository.deleteAllBySessionId(SESSION_ID)).thenReturn(Flux.just(2L, 3L));
+        when(cacheGenerations.current(CacheScope.CART)).thenReturn(5L);
+
+        Assertions.assertDoesNotThrow(() -> cartService.clearCart(SESSION_ID).block());
+
+        verify(cache).evict(List.of(5L, SESSION_ID, 2L));
+        verify(cache).evict(List.of(5L, SESSION_ID, 3L));
+        verify(cacheGenerations, never()).bump(CacheScope.CART);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void apply_shouldSendFoldedChangesInOneTransaction() {
+        CartItem written = CartItem.builder().id(1L).sessionId(SESSION_ID).itemId(2L).quantity(3).build();
+        CartItem emptied = CartItem.builder().id(2L).sessionId(SESSION_ID).itemId(3L).quantity(0).build();
+        when(transactionalOperator.transactional(any(Mono.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(cartRepository.applyChanges(eq(SESSION_ID), aryEq(new Long[]{2L, 3L}), aryEq(new Integer[]{2, 0}),
+                aryEq(new Integer[]{2, 0}), aryEq(new Boolean[]{false, true})))
+                .thenReturn(Flux.just(written, emptied));
+        when(cartRepository.deleteEmpty(SESSION_ID, List.of(2L, 3L))).thenReturn(Mono.just(1));
+        when(cacheGenerations.current(CacheScope.CART)).thenReturn(5L);
+
+        cartService.apply(SESSION_ID, List.of(
+                new CartItemActionDto(2L, ItemAction.plus),
+                new CartItemActionDto(3L, ItemAction.delete),
+                new CartItemActionDto(2L, ItemAction.plus))).block();
+
+        verify(transactionalOperator, times(1)).transactional(any(Mono.class));
+        verify(cache).put(List.of(5L, SESSION_ID, 2L), written);
+        verify(cache).evict(List.of(5L, SESSION_ID, 3L));
+    }
+
+    @Test
+    void apply_shouldSkipEmptyBatch() {
+        cartService.apply(SESSION_ID, List.of()).block();
+
+        verifyNoInteractions(cartRepository, transactionalOperator);
     }
 }
@@ -0,0 +1,102 @@
+package ru.mdemidkin.client.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.mdemidkin.client.config.CatalogSearchProperties;
+import ru.mdemidkin.client.dto.ItemsPage;
+import ru.mdemidkin.client.dto.ItemsSortedSearchPageDto;
+import ru.mdemidkin.client.dto.PageCursor;
+import ru.mdemidkin.client.model.Item;
+import ru.mdemidkin.client.model.enums.SearchMode;
+import ru.mdemidkin.client.model.enums.SortType;
+import ru.mdemidkin.client.repository.ItemRepository;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CatalogServiceUnitTest {
+
+    @Mock
+    private ItemRepository itemRepository;
+
+    @Spy
+    private CatalogSearchProperties searchProperties = new CatalogSearchProperties();
+
+    @InjectMocks
+    private CatalogService catalogService;
+
+    @Test
+    void searchItems_shouldReturnDto() {
+        Item item = Item.builder().id(1L).title("Test").price(10.0).build();
+
+        when(itemRepository.getItemsPageBySearch("", SortType.NO, SearchMode.FULL_TEXT, 1, 10))
+                .thenReturn(Mono.just(new ItemsPage(List.of(item), 11L)));
+
+        ItemsSortedSearchPageDto dto = catalogService.searchItems("", SortType.NO, 1, 10).block();
+
+        assertNotNull(dto);
+        assertEquals(1, dto.responsePagingDto().pageNumber());
+        assertTrue(dto.responsePagingDto().hasNext());
+        assertFalse(dto.responsePagingDto().hasPrevious());
+        assertEquals(1, dto.itemsTile().size());
+    }
+
+    @Test
+    void searchItemsByCursor_shouldReturnNextCursorWhenMoreItemsExist() {
+        Item first = Item.builder().id(1L).title("A").price(10.0).build();
+        Item second = Item.builder().id(2L).title("B").price(20.0).build();
+
+        when(itemRepository.getItemsBySearchAfter("", SortType.ALPHA, SearchMode.FULL_TEXT, null, true, 2))
+                .thenReturn(Flux.just(first, second));
+
+        ItemsSortedSearchPageDto dto = catalogService.searchItemsByCursor("", SortType.ALPHA, 1, 1, null, null).block();
+
+        assertNotNull(dto);
+        assertEquals(1, dto.itemsTile().get(0).size());
+        assertTrue(dto.responsePagingDto().hasNext());
+        assertFalse(dto.responsePagingDto().hasPrevious());
+        assertEquals(PageCursor.of("A", 1L), PageCursor.decode(dto.responsePagingDto().nextCursor()));
+    }
+
+    @Test
+    void searchItemsByCursor_backward_shouldRestoreAscendingOrder() {
+        PageCursor cursor = PageCursor.of("C", 3L);
+        Item second = Item.builder().id(2L).title("B").price(20.0).build();
+        Item first = Item.builder().id(1L).title("A").price(10.0).build();
+
+        when(itemRepository.getItemsBySearchAfter("", SortType.ALPHA, SearchMode.FULL_TEXT, cursor, false, 3))
+                .thenReturn(Flux.just(second, first));
+
+        ItemsSortedSearchPageDto dto = catalogService
+                .searchItemsByCursor("", SortType.ALPHA, 2, 2, null, cursor.encode())
+                .block();
+
+        assertNotNull(dto);
+        assertEquals(List.of(1L, 2L), dto.itemsTile().get(0).stream().map(Item::getId).toList());
+        assertTrue(dto.responsePagingDto().hasNext());
+        assertFalse(dto.responsePagingDto().hasPrevious());
+    }
+
+    @Test
+    void getById_shouldReturnCatalogItem() {
+        Item item = Item.builder().id(1L).title("Test").price(10.0).build();
+        when(itemRepository.findById(1L)).thenReturn(Mono.just(item));
+
+        Item result = catalogService.getById(1L).block();
+
+        assertNotNull(result);
+        assertEquals("Test", result.getTitle());
+    }
+}
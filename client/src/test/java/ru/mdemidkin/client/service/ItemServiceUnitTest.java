@@ -1,13 +1,21 @@
 package ru.mdemidkin.client.service;
 
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import ru.mdemidkin.client.cache.ItemIdFilter;
+import ru.mdemidkin.client.cache.MissingItems;
+import ru.mdemidkin.client.config.CatalogSearchProperties;
+import ru.mdemidkin.client.dto.CartItemActionDto;
+import ru.mdemidkin.client.dto.CartItemListDto;
 import ru.mdemidkin.client.dto.ItemsSortedSearchPageDto;
+import ru.mdemidkin.client.dto.PagingDto;
 import ru.mdemidkin.client.model.CartItem;
 import ru.mdemidkin.client.model.Item;
 import ru.mdemidkin.client.model.enums.ItemAction;
@@ -15,92 +23,224 @@ import ru.mdemidkin.client.model.enums.SortType;
 import ru.mdemidkin.client.repository.ItemRepository;
 
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
-import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyLong;
-import static org.mockito.Mockito.mock;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
 class ItemServiceUnitTest {
 
+    private static final String SESSION_ID = "session-1";
+
     @Mock
     private ItemRepository itemRepository;
 
     @Mock
     private CartService cartService;
 
+    @Mock
+    private CatalogService catalogService;
+
+    @Spy
+    private CatalogSearchProperties searchProperties = new CatalogSearchProperties();
+
+    @Mock
+    private ItemIdFilter itemIdFilter;
+
+    @Mock
+    private MissingItems missingItems;
+
     @InjectMocks
     private ItemService itemService;
 
+    @BeforeEach
+    void setUp() {
+        lenient().when(itemIdFilter.mightContain(anyLong())).thenReturn(true);
+        lenient().when(missingItems.isMissing(anyLong())).thenReturn(Mono.just(false));
+    }
+
     @Test
-    void searchItems_shouldReturnDto() {
-        Item item = Item.builder().id(1L).title("Test").price(10.0).build();
-        CartItem cartItem = CartItem.builder().itemId(1L).quantity(2).build();
+    void searchItems_shouldApplyCartQuantitiesToCatalogPage() {
+        Item item = Item.builder().id(1L).title("Test").price(10.0).count(0).build();
+        ItemsSortedSearchPageDto catalogPage = new ItemsSortedSearchPageDto("", SortType.NO,
+                new PagingDto(1, 10, false, false), List.of(List.of(item)));
 
-        when(itemRepository.getItemsBySearch("", SortType.NO, 1, 10)).thenReturn(Flux.just(item));
-        when(cartService.findItemById(1L)).thenReturn(Mono.just(cartItem));
-        when(itemRepository.getCountBySearch(""))
-                .thenReturn(Mono.just(1L));
+        when(catalogService.searchItems("", SortType.NO, 1, 10)).thenReturn(Mono.just(catalogPage));
+        when(cartService.getQuantities(SESSION_ID, List.of(1L))).thenReturn(Mono.just(Map.of(1L, 2)));
 
-        Mono<ItemsSortedSearchPageDto> result = itemService.searchItems("", SortType.NO, 1, 10);
+        ItemsSortedSearchPageDto dto = itemService.searchItems(SESSION_ID, "", SortType.NO, 1, 10).block();
 
-        ItemsSortedSearchPageDto dto = result.block();
         assertNotNull(dto);
         assertEquals(1, dto.responsePagingDto().pageNumber());
-        assertEquals(1, dto.itemsTile().size());
+        assertEquals(2, dto.itemsTile().get(0).get(0).getCount());
+        assertEquals("Test", dto.itemsTile().get(0).get(0).getTitle());
+        assertEquals(0, item.getCount());
+    }
+
+    @Test
+    void searchItemsByCursor_shouldApplyCartQuantitiesToCatalogPage() {
+        Item first = Item.builder().id(1L).title("A").price(10.0).count(0).build();
+        Item second = Item.builder().id(2L).title("B").price(20.0).count(0).build();
+        ItemsSortedSearchPageDto catalogPage = new ItemsSortedSearchPageDto("", SortType.ALPHA,
+                new PagingDto(1, 2, true, false, "next", null), List.of(List.of(first, second)));
+
+        when(catalogService.searchItemsByCursor("", SortType.ALPHA, 1, 2, null, null))
+                .thenReturn(Mono.just(catalogPage));
+        when(cartService.getQuantities(SESSION_ID, List.of(1L, 2L))).thenReturn(Mono.just(Map.of(2L, 3)));
+
+        ItemsSortedSearchPageDto dto = itemService.searchItemsByCursor(SESSION_ID, "", SortType.ALPHA, 1, 2, null, null).block();
+
+        assertNotNull(dto);
+        assertEquals(List.of(0, 3), dto.itemsTile().get(0).stream().map(Item::getCount).toList());
+        assertEquals("next", dto.responsePagingDto().nextCursor());
     }
 
     @Test
-    void getById_shouldReturnItemWithQuantity() {
-        Item item = Item.builder().id(1L).title("Test").price(10.0).build();
+    void getById_shouldApplyCartQuantityToCatalogItem() {
+        Item item = Item.builder().id(1L).title("Test").price(10.0).count(0).build();
         CartItem cartItem = CartItem.builder().itemId(1L).quantity(2).build();
 
-        when(itemRepository.findById(1L)).thenReturn(Mono.just(item));
-        when(cartService.findItemById(1L)).thenReturn(Mono.just(cartItem));
+        when(catalogService.getById(1L)).thenReturn(Mono.just(item));
+        when(cartService.findItemById(SESSION_ID, 1L)).thenReturn(Mono.just(cartItem));
 
-        Item result = itemService.getById(1L).block();
+        Item result = itemService.getById(SESSION_ID, 1L).block();
         assertNotNull(result);
         assertEquals(2, result.getCount());
+        assertEquals(0, item.getCount());
+    }
+
+    @Test
+    void getById_shouldReturnZeroQuantityWhenItemIsNotInCart() {
+        Item item = Item.builder().id(1L).title("Test").price(10.0).count(0).build();
+
+        when(catalogService.getById(1L)).thenReturn(Mono.just(item));
+        when(cartService.findItemById(SESSION_ID, 1L)).thenReturn(Mono.empty());
+
+        Item result = itemService.getById(SESSION_ID, 1L).block();
+        assertNotNull(result);
+        assertEquals(0, result.getCount());
+    }
+
+    @Test
+    void getById_shouldRejectIdOutsideFilterWithoutLookups() {
+        when(itemIdFilter.mightContain(404L)).thenReturn(false);
+
+        Item result = itemService.getById(SESSION_ID, 404L).block();
+
+        assertNull(result);
+        verifyNoInteractions(catalogService, cartService, missingItems);
+    }
+
+    @Test
+    void getById_shouldRememberMissingItem() {
+        when(catalogService.getById(404L)).thenReturn(Mono.empty());
+
+        Item result = itemService.getById(SESSION_ID, 404L).block();
+
+        assertNull(result);
+        verify(missingItems).markMissing(404L);
+        verifyNoInteractions(cartService);
+    }
+
+    @Test
+    void getById_shouldSkipCatalogForRememberedMissingItem() {
+        when(missingItems.isMissing(404L)).thenReturn(Mono.just(true));
+
+        Item result = itemService.getById(SESSION_ID, 404L).block();
+
+        assertNull(result);
+        verifyNoInteractions(catalogService);
     }
 
     @Test
-    void updateCartItem_plus_shouldIncrementQuantity() {
-        Item mock = mock(Item.class);
-        CartItem cartItem = CartItem.builder().id(1L).itemId(2L).quantity(1).build();
+    void updateCartItem_plus_shouldIncrementAtomically() {
+        Item item = Item.builder().id(2L).title("Test").price(10.0).build();
+        CartItem incremented = CartItem.builder().id(1L).itemId(2L).quantity(2).build();
 
-        when(cartService.findItemById(2L)).thenReturn(Mono.just(cartItem));
-        when(cartService.saveOrUpdate(any())).thenReturn(Mono.just(cartItem));
-        when(itemRepository.findById(anyLong())).thenReturn(Mono.just(mock));
+        when(catalogService.getById(2L)).thenReturn(Mono.just(item));
+        when(cartService.increment(SESSION_ID, 2L)).thenReturn(Mono.just(incremented));
 
-        CartItem result = itemService.updateCartItem(2L, ItemAction.plus).block();
+        CartItem result = itemService.updateCartItem(SESSION_ID, 2L, ItemAction.plus).block();
         assertNotNull(result);
         assertEquals(2, result.getQuantity());
+        verify(cartService, never()).findItemById(anyString(), anyLong());
+        verify(itemRepository, never()).findById(anyLong());
+    }
+
+    @Test
+    void updateCartItem_plus_shouldSkipMissingCatalogItem() {
+        when(catalogService.getById(2L)).thenReturn(Mono.empty());
+
+        CartItem result = itemService.updateCartItem(SESSION_ID, 2L, ItemAction.plus).block();
+
+        assertNull(result);
+        verify(cartService, never()).increment(anyString(), anyLong());
     }
 
     @Test
-    void updateCartItem_minus_shouldDeleteIfQuantityIsOne() {
-        CartItem cartItem = CartItem.builder().id(1L).itemId(2L).quantity(1).build();
+    void updateCartItem_shouldRejectIdOutsideFilter() {
+        when(itemIdFilter.mightContain(404L)).thenReturn(false);
 
-        when(cartService.findItemById(2L)).thenReturn(Mono.just(cartItem));
-        when(cartService.delete(cartItem)).thenReturn(Mono.empty());
+        CartItem result = itemService.updateCartItem(SESSION_ID, 404L, ItemAction.plus).block();
 
-        CartItem result = itemService.updateCartItem(2L, ItemAction.minus).block();
         assertNull(result);
+        verifyNoInteractions(cartService, catalogService);
     }
 
     @Test
-    void updateCartItem_delete_shouldCallDelete() {
-        CartItem cartItem = CartItem.builder().id(1L).itemId(2L).quantity(5).build();
+    void updateCartItem_minus_shouldDecrementAtomically() {
+        when(cartService.decrement(SESSION_ID, 2L)).thenReturn(Mono.empty());
 
-        when(cartService.findItemById(2L)).thenReturn(Mono.just(cartItem));
-        when(cartService.delete(cartItem)).thenReturn(Mono.empty());
+        CartItem result = itemService.updateCartItem(SESSION_ID, 2L, ItemAction.minus).block();
+        assertNull(result);
+        verify(cartService).decrement(SESSION_ID, 2L);
+        verifyNoInteractions(catalogService);
+    }
+
+    @Test
+    void updateCartItem_delete_shouldRemoveByItemId() {
+        when(cartService.remove(SESSION_ID, 2L)).thenReturn(Mono.empty());
 
-        CartItem result = itemService.updateCartItem(2L, ItemAction.delete).block();
+        CartItem result = itemService.updateCartItem(SESSION_ID, 2L, ItemAction.delete).block();
         assertNull(result);
+        verify(cartService).remove(SESSION_ID, 2L);
+    }
+
+    @Test
+    void updateCartItems_shouldApplyValidActionsOnce() {
+        Item item = Item.builder().id(2L).title("Test").price(10.0).count(2).build();
+        when(itemIdFilter.mightContain(404L)).thenReturn(false);
+        when(catalogService.getById(2L)).thenReturn(Mono.just(item));
+        when(catalogService.getById(3L)).thenReturn(Mono.empty());
+        when(cartService.apply(anyString(), anyList())).thenReturn(Mono.empty());
+        when(cartService.getItemsInCart(SESSION_ID)).thenReturn(Flux.just(item));
+
+        CartItemListDto dto = itemService.updateCartItems(SESSION_ID, List.of(
+                new CartItemActionDto(2L, ItemAction.plus),
+                new CartItemActionDto(2L, ItemAction.plus),
+                new CartItemActionDto(3L, ItemAction.plus),
+                new CartItemActionDto(404L, ItemAction.plus),
+                new CartItemActionDto(5L, ItemAction.delete))).block();
+
+        assertNotNull(dto);
+        assertEquals(20.0, dto.cartTotal());
+        verify(cartService).apply(SESSION_ID, List.of(
+                new CartItemActionDto(2L, ItemAction.plus),
+                new CartItemActionDto(2L, ItemAction.plus),
+                new CartItemActionDto(5L, ItemAction.delete)));
+        verify(catalogService).getById(2L);
+        verify(missingItems).markMissing(3L);
     }
 
     @Test
@@ -112,4 +252,19 @@ class ItemServiceUnitTest {
         assertNotNull(items);
         assertEquals(1, items.size());
     }
+
+    @Test
+    void getCartItemListDto_shouldUseSingleJoinQuery() {
+        Item first = Item.builder().id(1L).price(10.0).count(2).build();
+        Item second = Item.builder().id(2L).price(5.0).count(1).build();
+        when(cartService.getItemsInCart(SESSION_ID)).thenReturn(Flux.just(first, second));
+
+        CartItemListDto dto = itemService.getCartItemListDto(SESSION_ID).block();
+
+        assertNotNull(dto);
+        assertEquals(2, dto.items().size());
+        assertEquals(25.0, dto.cartTotal());
+        assertFalse(dto.isCartEmpty());
+        verify(cartService, never()).getAll(anyString());
+    }
 }
@@ -6,22 +6,34 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.reactive.TransactionalOperator;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import ru.mdemidkin.client.cache.CacheGenerations;
+import ru.mdemidkin.client.cache.CacheScope;
 import ru.mdemidkin.client.dto.CartItemListDto;
 import ru.mdemidkin.client.dto.OrderDto;
+import ru.mdemidkin.client.dto.PageCursor;
 import ru.mdemidkin.client.mapper.OrderMapper;
 import ru.mdemidkin.client.model.Item;
 import ru.mdemidkin.client.model.Order;
-import ru.mdemidkin.client.model.OrderItem;
+import ru.mdemidkin.client.repository.ItemRepository;
 import ru.mdemidkin.client.repository.OrderItemRepository;
 import ru.mdemidkin.client.repository.OrderRepository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.AdditionalMatchers.aryEq;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -42,25 +54,48 @@ class OrderServiceUnitTest {
     @Mock
     private OrderMapper mapper;
 
+    @Mock
+    private CacheGenerations cacheGenerations;
+
+    @Mock
+    private TransactionalOperator transactionalOperator;
+
+    @Mock
+    private ItemRepository itemRepository;
+
     @InjectMocks
     private OrderService orderService;
 
     @Test
     void findAll_shouldReturnOrderDtos() {
-        Order order = new Order();
-        order.setId(1L);
-        List<Item> items = List.of(Item.builder().id(1L).build());
         OrderDto dto = Mockito.mock(OrderDto.class);
 
-        when(orderRepository.findAll()).thenReturn(Flux.just(order));
-        when(itemService.getByOrderId(1L)).thenReturn(Mono.just(items));
-        when(mapper.toDto(order, items)).thenReturn(dto);
+        when(orderRepository.findOrdersWithItems(null, 10)).thenReturn(Flux.just(dto));
 
-        List<OrderDto> result = orderService.findAll().collectList().block();
+        List<OrderDto> result = orderService.findAll(null, 10).collectList().block();
         assertNotNull(result);
         assertEquals(1, result.size());
     }
 
+    @Test
+    void findAll_shouldIgnoreMalformedCursor() {
+        String cursor = PageCursor.of("not-a-date", 1L).encode();
+        when(orderRepository.findOrdersWithItems(null, 10)).thenReturn(Flux.empty());
+
+        List<OrderDto> result = orderService.findAll(cursor, 10).collectList().block();
+        assertNotNull(result);
+        assertTrue(result.isEmpty());
+    }
+
+    @Test
+    void findNextCursor_shouldEncodeRepositoryCursor() {
+        PageCursor next = PageCursor.of(LocalDateTime.of(2025, 1, 1, 10, 0), 5L);
+        when(orderRepository.findNextOrdersCursor(null, 10)).thenReturn(Mono.just(next));
+
+        String result = orderService.findNextCursor(null, 10).block();
+        assertEquals(next, PageCursor.decode(result));
+    }
+
     @Test
     void findById_shouldReturnOrderDto() {
         Order order = new Order();
@@ -79,23 +114,73 @@ class OrderServiceUnitTest {
     @Test
     void createOrder_shouldBuildSaveAndClear() {
         Item item = Item.builder().id(1L).count(2).price(10.0).build();
-        OrderItem orderItem = OrderItem.builder().itemId(1L).quantity(2).pricePerItem(10.0).build();
-        Order order = new Order();
-        order.setId(1L);
 
-        when(itemService.getCartItemListDto())
-                .thenReturn(Mono.just(new CartItemListDto(List.of(item), 20.0, false)));
         when(orderRepository.save(any())).thenAnswer(invocation -> {
             Order saved = invocation.getArgument(0);
             saved.setId(1L);
             return Mono.just(saved);
         });
-        when(orderItemRepository.saveAll(any(Iterable.class))).thenReturn(Flux.just(orderItem));
-        when(cartService.clearCart()).thenReturn(Mono.empty());
+        when(orderItemRepository.insertAll(eq(1L), aryEq(new Long[]{1L}), aryEq(new Integer[]{2}),
+                aryEq(new Double[]{10.0}))).thenReturn(Mono.just(1));
+        when(transactionalOperator.transactional(any(Mono.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(cartService.clearCart("session-1")).thenReturn(Mono.empty());
+        when(cacheGenerations.bump(CacheScope.ORDERS)).thenReturn(Mono.empty());
 
-        Order result = orderService.createOrder().block();
+        Order result = orderService.createOrder("session-1", List.of(item)).block();
         assertNotNull(result);
         assertEquals(1L, result.getId());
         assertEquals(20.0, result.getTotalPrice());
+        verify(cacheGenerations).bump(CacheScope.ORDERS);
+        verify(cartService).clearCart("session-1");
+        verify(transactionalOperator).transactional(any(Mono.class));
+        verify(orderItemRepository, never()).saveAll(any(Iterable.class));
+        verifyNoInteractions(itemRepository);
+    }
+
+    @Test
+    void reserveCart_shouldFlushAndReserveWholeCart() {
+        Item item = Item.builder().id(1L).count(2).price(10.0).build();
+
+        when(cartService.flush("session-1")).thenReturn(Mono.empty());
+        when(itemService.getCartItemListDto("session-1"))
+                .thenReturn(Mono.just(new CartItemListDto(List.of(item), 20.0, false)));
+        when(transactionalOperator.transactional(any(Mono.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(itemRepository.reserveStock(aryEq(new Long[]{1L}), aryEq(new Integer[]{2}))).thenReturn(Flux.just(1L));
+
+        List<Item> reserved = orderService.reserveCart("session-1").block();
+
+        assertEquals(List.of(item), reserved);
+        verify(cartService).flush("session-1");
+        verifyNoInteractions(orderRepository, orderItemRepository);
+    }
+
+    @Test
+    void reserveCart_shouldFailAndKeepCartOnStockShortfall() {
+        Item first = Item.builder().id(3L).count(1).price(10.0).build();
+        Item second = Item.builder().id(1L).count(5).price(20.0).build();
+
+        when(cartService.flush("session-1")).thenReturn(Mono.empty());
+        when(itemService.getCartItemListDto("session-1"))
+                .thenReturn(Mono.just(new CartItemListDto(List.of(first, second), 110.0, false)));
+        when(transactionalOperator.transactional(any(Mono.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(itemRepository.reserveStock(aryEq(new Long[]{1L, 3L}), aryEq(new Integer[]{5, 1})))
+                .thenReturn(Flux.just(3L));
+
+        InsufficientStockException error = assertThrows(InsufficientStockException.class,
+                () -> orderService.reserveCart("session-1").block());
+
+        assertEquals(List.of(1L), error.getItemIds());
+        verify(cartService, never()).clearCart(any());
+        verifyNoInteractions(orderRepository, orderItemRepository);
+    }
+
+    @Test
+    void releaseStock_shouldReturnReservedQuantities() {
+        Item item = Item.builder().id(1L).count(2).price(10.0).build();
+        when(itemRepository.releaseStock(aryEq(new Long[]{1L}), aryEq(new Integer[]{2}))).thenReturn(Mono.just(1));
+
+        orderService.releaseStock(List.of(item)).block();
+
+        verify(itemRepository).releaseStock(aryEq(new Long[]{1L}), aryEq(new Integer[]{2}));
     }
 }
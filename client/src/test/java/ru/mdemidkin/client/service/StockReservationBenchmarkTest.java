@@ -0,0 +1,110 @@
+package ru.mdemidkin.client.service;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.mdemidkin.client.config.TestContainersConfig;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Конкурентное оформление заказов на один популярный товар: остаток списывается ровно до нуля,
+ * лишние покупатели получают отказ, а не перепродажу.
+ * Запуск: gradle :client:benchmark
+ */
+@Tag("benchmark")
+@SpringBootTest
+class StockReservationBenchmarkTest extends TestContainersConfig {
+
+    private static final long HOT_ITEM_ID = 1L;
+    private static final int STOCK = 100;
+    private static final int BUYERS = 1_000;
+    private static final int CONCURRENCY = 64;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private CartService cartService;
+
+    @Autowired
+    private DatabaseClient databaseClient;
+
+    @Test
+    void concurrentBuyersOfHotItem() {
+        Integer initialStock = stockCount();
+        setStock(STOCK);
+        List<String> sessions = Flux.range(0, BUYERS)
+                .map(i -> "stock-benchmark-" + i)
+                .concatMap(session -> cartService.increment(session, HOT_ITEM_ID).thenReturn(session))
+                .collectList()
+                .block();
+        try {
+            List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+            long start = System.nanoTime();
+            List<Boolean> results = Flux.fromIterable(sessions)
+                    .flatMap(session -> buy(session, latencies), CONCURRENCY)
+                    .collectList()
+                    .block();
+            double elapsedMs = (System.nanoTime() - start) / 1_000_000.0;
+
+            List<Long> sorted = latencies.stream().sorted().toList();
+            System.out.printf("buyers %d, concurrency %d, stock %d%n", BUYERS, CONCURRENCY, STOCK);
+            System.out.printf("total %.0f ms, %.0f checkouts/s, p50 %.2f ms, p99 %.2f ms%n",
+                    elapsedMs, BUYERS / elapsedMs * 1000,
+                    percentile(sorted, 0.50), percentile(sorted, 0.99));
+
+            assertThat(results).filteredOn(Boolean::booleanValue).hasSize(STOCK);
+            assertThat(stockCount()).isZero();
+        } finally {
+            setStock(initialStock);
+            databaseClient.sql("DELETE FROM cart_items WHERE session_id LIKE 'stock-benchmark-%'").then()
+                    .then(databaseClient.sql("DELETE FROM order_items WHERE order_id > 2").then())
+                    .then(databaseClient.sql("DELETE FROM orders WHERE id > 2").then())
+                    .block();
+        }
+    }
+
+    /**
+     * @return true, если заказ оформлен, false - если остатка не хватило
+     */
+    private Mono<Boolean> buy(String session, List<Long> latencies) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return orderService.reserveCart(session)
+                    .flatMap(items -> orderService.createOrder(session, items))
+                    .map(order -> true)
+                    .onErrorResume(InsufficientStockException.class, e -> Mono.just(false))
+                    .doOnNext(result -> latencies.add(System.nanoTime() - start));
+        });
+    }
+
+    private Integer stockCount() {
+        return databaseClient.sql("SELECT stock_count FROM items WHERE id = :id")
+                .bind("id", HOT_ITEM_ID)
+                .map(row -> row.get("stock_count", Integer.class))
+                .one()
+                .block();
+    }
+
+    private void setStock(int stock) {
+        databaseClient.sql("UPDATE items SET stock_count = :stock WHERE id = :id")
+                .bind("stock", stock)
+                .bind("id", HOT_ITEM_ID)
+                .then()
+                .block();
+    }
+
+    private static double percentile(List<Long> sortedNanos, double percentile) {
+        int index = (int) Math.ceil(percentile * sortedNanos.size()) - 1;
+        return sortedNanos.get(Math.max(index, 0)) / 1_000_000.0;
+    }
+}